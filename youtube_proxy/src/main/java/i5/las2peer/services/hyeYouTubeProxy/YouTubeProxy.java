@@ -1,15 +1,25 @@
 package i5.las2peer.services.hyeYouTubeProxy;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.HttpURLConnection;
 
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 import javax.ws.rs.*;
@@ -19,6 +29,7 @@ import javax.ws.rs.core.Response;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import i5.las2peer.api.Context;
 import i5.las2peer.api.persistency.Envelope;
@@ -32,10 +43,33 @@ import i5.las2peer.restMapper.annotations.ServicePath;
 
 import i5.las2peer.services.hyeYouTubeProxy.identityManagement.Consent;
 import i5.las2peer.services.hyeYouTubeProxy.identityManagement.IdentityManager;
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.OwnerIdentity;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Deadline;
 import i5.las2peer.services.hyeYouTubeProxy.lib.L2pUtil;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+import i5.las2peer.services.hyeYouTubeProxy.parser.PageType;
+import i5.las2peer.services.hyeYouTubeProxy.parser.ParsingChain;
 import i5.las2peer.services.hyeYouTubeProxy.parser.YouTubeParser;
 import i5.las2peer.services.hyeYouTubeProxy.parser.Recommendation;
 import i5.las2peer.services.hyeYouTubeProxy.lib.ParserUtil;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.AdaptiveConcurrencyLimiter;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.ApiResponseListener;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.CircuitBreaker;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.ContinuationClient;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.FixtureStore;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.Hedger;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.HttpScraper;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.LoadedPage;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.OwnerRateLimiter;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.Prefetcher;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.RecommendationCache;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.ReplayServer;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.ResourceFilter;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.ScrapeEngine;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.ScrapeException;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.ScrapedPage;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.SingleFlight;
+import i5.las2peer.services.hyeYouTubeProxy.scraper.UpstreamUnavailableException;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -47,12 +81,11 @@ import io.swagger.annotations.License;
 import io.swagger.annotations.SwaggerDefinition;
 import io.swagger.util.Json;
 
-import com.microsoft.playwright.Browser;
 import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.Page;
-import com.microsoft.playwright.Playwright;
 import com.microsoft.playwright.options.Cookie;
-// import com.microsoft.playwright.options.LoadState;
+import com.microsoft.playwright.options.LoadState;
+import com.microsoft.playwright.options.WaitUntilState;
 
 /**`
  * HyE - YouTube Proxy
@@ -80,11 +113,15 @@ import com.microsoft.playwright.options.Cookie;
 @ServicePath("/hye-youtube")
 public class YouTubeProxy extends RESTService {
 
-	private final String YOUTUBE_MAIN_PAGE = "https://www.youtube.com/";
-	private final String YOUTUBE_VIDEO_PAGE = YOUTUBE_MAIN_PAGE + "watch?v=";
-	private final String YOUTUBE_RESULTS_PAGE = YOUTUBE_MAIN_PAGE + "results?search_query=";
+	private final String DEFAULT_YOUTUBE_URL = "https://www.youtube.com";
+	private final String YOUTUBE_VIDEO_PATH = "/watch?v=";
+	private final String YOUTUBE_RESULTS_PATH = "/results?search_query=";
 	private final String YOUTUBE_PROFILE_PAGE = "https://studio.youtube.com/";
 	private final String PREFERENCE_PREFIX = "PREFERENCES_";
+	private final int DEFAULT_PAGE_LIMIT = 20;
+	private final int MAX_PAGE_LIMIT = 100;
+	// Every worker runs its own Chromium instance, so only a few are started unless configured otherwise
+	private final int DEFAULT_BROWSER_WORKERS = 2;
 
 	private String debug;
 	private String cookieFile;
@@ -94,9 +131,68 @@ public class YouTubeProxy extends RESTService {
 	private String frontendUrls;
 	private String serviceAgentName;
 	private String serviceAgentPw;
+	private String contextPoolSize;
+	private String contextIdleTimeout;
+	private String browserWorkers;
+	private String scrapeQueueSize;
+	private String browserMaxContexts;
+	private String browserMaxRss;
+	private String blockedResourceTypes;
+	private String blockedUrlPatterns;
+	private String mainResourceAllowlist;
+	private String watchResourceAllowlist;
+	private String resultsResourceAllowlist;
+	private String httpFastPath;
+	private String pageExtraction;
+	private String mainParsingOrder;
+	private String watchParsingOrder;
+	private String resultsParsingOrder;
+	private String parsingMinResults;
+	private String interceptApiResponses;
+	private String recommendationCacheSize;
+	private String mainCacheTtl;
+	private String watchCacheTtl;
+	private String resultsCacheTtl;
+	private String requestTimeout;
+	private String batchMaxItems;
+	private String prefetchCount;
+	private String prefetchConcurrency;
+	private String prefetchRatePerMinute;
+	private String ownerRatePerMinute;
+	private String ownerBurst;
+	private String ownerMaxWait;
+	private String upstreamMaxConcurrency;
+	private String upstreamLatencyTarget;
+	private String circuitFailureRate;
+	private String circuitOpenTime;
+	private String serveStale;
+	private String hedgePercentile;
+	private String hedgeBudget;
+	private String hedgeOtherOwners;
+	private String youtubeBaseUrl;
+	private String recordFixtures;
+	private String replayFixtures;
+	private String replayPort;
+	private String replayLatency;
+	private String replayJitter;
+	private String replayErrorRate;
 
 	private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
-	private static Browser browser = null;
+	private static ScrapeEngine engine = null;
+	private static ResourceFilter resourceFilter = null;
+	private static ParsingChain parsingChain = null;
+	private static HttpScraper httpScraper = null;
+	private static ContinuationClient continuationClient = null;
+	private static RecommendationCache recommendationCache = null;
+	private static Prefetcher prefetcher = null;
+	private static OwnerRateLimiter ownerRateLimiter = null;
+	private static AdaptiveConcurrencyLimiter concurrencyLimiter = null;
+	private static CircuitBreaker circuitBreaker = null;
+	private static Hedger hedger = null;
+	private static String youtubeUrl = null;
+	private static FixtureStore fixtureRecorder = null;
+	private static ReplayServer replayServer = null;
+	private static final SingleFlight scrapeFlights = new SingleFlight("scrapeCoalescing");
 	private static boolean initialized = false;
 	private static IdentityManager idm = null;
 	private static Random rand = null;
@@ -112,12 +208,31 @@ public class YouTubeProxy extends RESTService {
 		log.info("Got properties: debug = " + debug + ", cookieFile = " + cookieFile + ", headerFile = " +
 				headerFile + ", consentRegistryAddress = " + consentRegistryAddress + ", rootUri = " + rootUri +
 				", frontendUrls = " + frontendUrls + ", serviceAgentName = " + serviceAgentName +
-				", serviceAgentPw = " + serviceAgentPw);
+				", serviceAgentPw = " + serviceAgentPw + ", contextPoolSize = " + contextPoolSize +
+				", contextIdleTimeout = " + contextIdleTimeout + ", browserWorkers = " + browserWorkers +
+				", scrapeQueueSize = " + scrapeQueueSize + ", browserMaxContexts = " + browserMaxContexts +
+				", browserMaxRss = " + browserMaxRss + ", blockedResourceTypes = " + blockedResourceTypes +
+				", blockedUrlPatterns = " + blockedUrlPatterns + ", mainResourceAllowlist = " + mainResourceAllowlist +
+				", watchResourceAllowlist = " + watchResourceAllowlist + ", resultsResourceAllowlist = " +
+				resultsResourceAllowlist + ", httpFastPath = " + httpFastPath + ", pageExtraction = " + pageExtraction +
+				", mainParsingOrder = " + mainParsingOrder + ", watchParsingOrder = " + watchParsingOrder +
+				", resultsParsingOrder = " + resultsParsingOrder + ", parsingMinResults = " + parsingMinResults +
+				", interceptApiResponses = " + interceptApiResponses +
+				", recommendationCacheSize = " + recommendationCacheSize + ", mainCacheTtl = " + mainCacheTtl +
+				", watchCacheTtl = " + watchCacheTtl +
+				", resultsCacheTtl = " + resultsCacheTtl + ", requestTimeout = " + requestTimeout +
+				", batchMaxItems = " + batchMaxItems + ", prefetchCount = " + prefetchCount +
+				", prefetchConcurrency = " + prefetchConcurrency + ", prefetchRatePerMinute = " +
+				prefetchRatePerMinute + ", ownerRatePerMinute = " + ownerRatePerMinute + ", ownerBurst = " +
+				ownerBurst + ", ownerMaxWait = " + ownerMaxWait + ", upstreamMaxConcurrency = " +
+				upstreamMaxConcurrency + ", upstreamLatencyTarget = " + upstreamLatencyTarget +
+				", circuitFailureRate = " + circuitFailureRate + ", circuitOpenTime = " + circuitOpenTime +
+				", serveStale = " + serveStale + ", hedgePercentile = " + hedgePercentile + ", hedgeBudget = " +
+				hedgeBudget + ", hedgeOtherOwners = " + hedgeOtherOwners + ", youtubeBaseUrl = " + youtubeBaseUrl +
+				", recordFixtures = " + recordFixtures + ", replayFixtures = " + replayFixtures + ", replayPort = " +
+				replayPort + ", replayLatency = " + replayLatency + ", replayJitter = " + replayJitter +
+				", replayErrorRate = " + replayErrorRate);
 
-		if (browser == null) {
-			Playwright playwright = Playwright.create();
-			browser = playwright.chromium().launch();
-		}
 		if (idm == null) {
 			// Do not allow to use static cookies/headers for production
 			if (debug != null && debug.equals("true"))
@@ -125,6 +240,82 @@ public class YouTubeProxy extends RESTService {
 			else
 				idm = new IdentityManager(null, null);
 		}
+		if (engine == null) {
+			engine = new ScrapeEngine(ParserUtil.toInt(browserWorkers, DEFAULT_BROWSER_WORKERS),
+					ParserUtil.toInt(scrapeQueueSize, 64), ParserUtil.toInt(contextPoolSize, 8),
+					ParserUtil.toInt(contextIdleTimeout, 300) * 1000L, ParserUtil.toInt(browserMaxContexts, 1000),
+					ParserUtil.toInt(browserMaxRss, 1024));
+			idm.addIdentityChangeListener(engine);
+		}
+		if (resourceFilter == null) {
+			EnumMap<PageType, List<String>> allowlists = new EnumMap<PageType, List<String>>(PageType.class);
+			allowlists.put(PageType.MAIN, ParserUtil.splitList(mainResourceAllowlist));
+			allowlists.put(PageType.WATCH, ParserUtil.splitList(watchResourceAllowlist));
+			allowlists.put(PageType.RESULTS, ParserUtil.splitList(resultsResourceAllowlist));
+			resourceFilter = new ResourceFilter(
+					ParserUtil.splitList(blockedResourceTypes == null ?
+							ResourceFilter.DEFAULT_BLOCKED_TYPES : blockedResourceTypes),
+					ParserUtil.splitList(blockedUrlPatterns == null ?
+							ResourceFilter.DEFAULT_BLOCKED_PATTERNS : blockedUrlPatterns),
+					allowlists);
+		}
+		if (parsingChain == null) {
+			EnumMap<PageType, String> orders = new EnumMap<PageType, String>(PageType.class);
+			orders.put(PageType.MAIN, mainParsingOrder);
+			orders.put(PageType.WATCH, watchParsingOrder);
+			orders.put(PageType.RESULTS, resultsParsingOrder);
+			parsingChain = new ParsingChain(orders, ParserUtil.toInt(parsingMinResults, 1));
+		}
+		if (youtubeUrl == null) {
+			youtubeUrl = youtubeBaseUrl == null || youtubeBaseUrl.isEmpty() ? DEFAULT_YOUTUBE_URL :
+					youtubeBaseUrl.replaceAll("/+$", "");
+			if (recordFixtures != null && !recordFixtures.isEmpty())
+				fixtureRecorder = new FixtureStore(recordFixtures);
+			// Serve recorded responses in place of YouTube, e.g., for load tests
+			if (replayFixtures != null && !replayFixtures.isEmpty()) {
+				try {
+					replayServer = new ReplayServer(new FixtureStore(replayFixtures), ParserUtil.toInt(replayPort, 0),
+							ParserUtil.toInt(replayLatency, 0), ParserUtil.toInt(replayJitter, 0),
+							ParserUtil.toInt(replayErrorRate, 0) / 100.0);
+					replayServer.start();
+					youtubeUrl = replayServer.getBaseUrl();
+				} catch (IOException e) {
+					log.printStackTrace(e);
+				}
+			}
+		}
+		if (httpScraper == null) {
+			httpScraper = new HttpScraper(fixtureRecorder);
+			continuationClient = new ContinuationClient(httpScraper, youtubeUrl);
+			Metrics.registerGauge("httpFastPath.hitRatio",
+					() -> Metrics.ratio("httpFastPath.hits", "httpFastPath.fallbacks"));
+		}
+		if (recommendationCache == null) {
+			EnumMap<PageType, Long> ttls = new EnumMap<PageType, Long>(PageType.class);
+			ttls.put(PageType.MAIN, ParserUtil.toInt(mainCacheTtl, 30) * 1000L);
+			ttls.put(PageType.WATCH, ParserUtil.toInt(watchCacheTtl, 300) * 1000L);
+			ttls.put(PageType.RESULTS, ParserUtil.toInt(resultsCacheTtl, 300) * 1000L);
+			recommendationCache = new RecommendationCache(ParserUtil.toInt(recommendationCacheSize, 1000), ttls);
+			idm.addIdentityChangeListener(recommendationCache);
+		}
+		if (concurrencyLimiter == null) {
+			// Start out with enough concurrent requests to keep every browser worker busy
+			int workers = ParserUtil.toInt(browserWorkers, DEFAULT_BROWSER_WORKERS);
+			concurrencyLimiter = new AdaptiveConcurrencyLimiter(2 * workers, ParserUtil.toInt(upstreamMaxConcurrency,
+					32), ParserUtil.toInt(upstreamLatencyTarget, 15) * 1000L);
+			circuitBreaker = new CircuitBreaker(ParserUtil.toInt(circuitFailureRate, 50) / 100.0,
+					ParserUtil.toInt(circuitOpenTime, 30) * 1000L);
+		}
+		if (hedger == null)
+			hedger = new Hedger(ParserUtil.toInt(hedgePercentile, 0), ParserUtil.toInt(hedgeBudget, 10));
+		if (ownerRateLimiter == null) {
+			ownerRateLimiter = new OwnerRateLimiter(ParserUtil.toInt(ownerRatePerMinute, 0),
+					ParserUtil.toInt(ownerBurst, 5), ParserUtil.toInt(ownerMaxWait, 10) * 1000L);
+		}
+		if (prefetcher == null) {
+			prefetcher = new Prefetcher(ParserUtil.toInt(prefetchCount, 0), ParserUtil.toInt(prefetchConcurrency, 2),
+					ParserUtil.toInt(prefetchRatePerMinute, 10), engine::getQueueDepth, ownerRateLimiter);
+		}
 		if (rand == null) {
 			rand = new Random();
 			rand.setSeed(System.currentTimeMillis());
@@ -144,11 +335,33 @@ public class YouTubeProxy extends RESTService {
 	}
 
 	private String getVideoUrl(String videoId) {
-		return YOUTUBE_VIDEO_PAGE + videoId;
+		return youtubeUrl + YOUTUBE_VIDEO_PATH + videoId;
 	}
 
 	private String getResultsUrl(String searchQuery) {
-		return YOUTUBE_RESULTS_PAGE + searchQuery;
+		return youtubeUrl + YOUTUBE_RESULTS_PATH + URLEncoder.encode(searchQuery, StandardCharsets.UTF_8);
+	}
+
+	private String getPageUrl(PageType pageType, String argument) {
+		switch (pageType) {
+			case WATCH:
+				return getVideoUrl(argument);
+			case RESULTS:
+				return getResultsUrl(argument);
+			default:
+				return youtubeUrl + "/";
+		}
+	}
+
+	private String getPageErrorMessage(PageType pageType, String argument) {
+		switch (pageType) {
+			case WATCH:
+				return "Could not get recommendations for video " + argument;
+			case RESULTS:
+				return "Could not get YouTube results for query " + argument;
+			default:
+				return "Could not get YouTube main page.";
+		}
 	}
 
 	private String getPreferenceHandle(String userId) { return PREFERENCE_PREFIX + userId; }
@@ -158,9 +371,10 @@ public class YouTubeProxy extends RESTService {
 	 *
 	 * @param context The current execution context from which the method is called
 	 * @param request The URI of the request for which the cookies (and headers) are used
+	 * @param deadline Deadline of the request, limits the time spent waiting for other services and the blockchain
 	 * @return Handle of chosen user
 	 */
-	private String findMatch(ExecutionContext context, String request) {
+	private String findMatch(ExecutionContext context, String request, Deadline deadline) {
 		// Get users whose cookies we have access to
 		HashSet<String> candidates = idm.getPermissions(context);
 		String readerId = L2pUtil.getUserId((UserAgent) context.getMainAgent());
@@ -189,14 +403,24 @@ public class YouTubeProxy extends RESTService {
 
 		String matchedUserId = "";
 		try {
-			// RMI call with parameters
-			matchedUserId = (String) context.invoke(
-					"i5.las2peer.services.hyeYouTubeRecommendations.YouTubeRecommendations", "findMatch",
-					new Serializable[] { candidates, request });
+			// RMI call with parameters, the recommendation service gets at most the time left for the request
+			CompletableFuture<Serializable> match = CompletableFuture.supplyAsync(() -> {
+				try {
+					return context.invoke("i5.las2peer.services.hyeYouTubeRecommendations.YouTubeRecommendations",
+							"findMatch", new Serializable[] { candidates, request });
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+			}, context.getExecutor());
+			matchedUserId = (String) deadline.await(match);
 			if (matchedUserId != null)
 				return matchedUserId;
+		} catch (TimeoutException e) {
+			log.warning("Recommendation service did not find a match in time.");
+			matchedUserId = "";
 		} catch (Exception e) {
 			log.printStackTrace(e);
+			matchedUserId = "";
 		}
 
 		// If recommendation service isn't running, try to get random user
@@ -210,7 +434,7 @@ public class YouTubeProxy extends RESTService {
 				--randPos;
 			}
 			// Check for permission
-			if (idm.checkConsent(context, new Consent(matchedUserId, readerId, rootUri, true))) {
+			if (idm.checkConsent(context, new Consent(matchedUserId, readerId, rootUri, true), deadline)) {
 				break;
 			} else {
 				// Go again
@@ -224,74 +448,836 @@ public class YouTubeProxy extends RESTService {
 	}
 
 	/**
-	 * Helper function to set the browser context i.e., getting cookies (and headers) from las2peer storage for request.
+	 * Helper function to resolve the identity used for a request i.e., getting cookies (and headers) from las2peer
+	 * storage for request.
 	 *
 	 * @param l2pContext The current execution context from which the method is called
-	 * @param browserContext The browser context to which the cookies (and headers) are added
 	 * @param ownerId If the request is made for a particular user, this refers to this user's las2peer ID
 	 * @param request The URI of the request for which the cookies (and headers) are used
-	 * @return Either an error code and appropriate message or {200: "OK"} to indicate success
+	 * @param deadline Deadline of the request
+	 * @return The cookies and headers of the chosen user
+	 * @throws ScrapeException Carrying an appropriate error code and message if no identity could be resolved
 	 */
-	private JsonObject setContext(ExecutionContext l2pContext, BrowserContext browserContext, String ownerId,
-								  String request) {
-		JsonObject response = new JsonObject();
-		if (!initialized) {
-			browserContext.close();
-			response.addProperty("500", "Service not initialized!");
-			return response;
-		}
+	private OwnerIdentity resolveIdentity(ExecutionContext l2pContext, String ownerId, String request,
+			Deadline deadline) throws ScrapeException {
+		deadline.check();
+		if (!initialized)
+			throw new ScrapeException(500, "Service not initialized!");
 
 		// No cookies, no play
-		if (!(debug != null && debug.equals("true")) && !hasCookies(l2pContext)) {
-			browserContext.close();
-			response.addProperty("403",
-					"Please upload a valid set of YouTube cookies to use this service!");
-			return response;
-		}
+		if (!(debug != null && debug.equals("true")) && !hasCookies(l2pContext))
+			throw new ScrapeException(403, "Please upload a valid set of YouTube cookies to use this service!");
 
 		// Get cookies (and headers) of appropriate user
 		boolean anon = (ownerId == null || ownerId.length() == 0);
 		if (anon)
-			ownerId = findMatch(l2pContext, request);
+			ownerId = findMatch(l2pContext, request, deadline);
+		deadline.check();
+		return getIdentity(l2pContext, ownerId, anon, deadline);
+	}
 
+	/**
+	 * Helper function getting the cookies (and headers) of the given user from las2peer storage
+	 *
+	 * @param l2pContext The current execution context from which the method is called
+	 * @param ownerId The las2peer ID of the user whose cookies are used
+	 * @param anon Whether the identity of the cookies' owner is hidden from the requesting user
+	 * @param deadline Deadline of the request, limits the time spent checking the consent
+	 * @return The cookies and headers of the given user
+	 * @throws ScrapeException Carrying an appropriate error code and message if the cookies could not be retrieved
+	 */
+	private OwnerIdentity getIdentity(ExecutionContext l2pContext, String ownerId, boolean anon, Deadline deadline)
+			throws ScrapeException {
 		// TODO replace ROOT_URI with actual requested resource
-		ArrayList<Cookie> cookies = idm.getCookies(l2pContext, ownerId, ROOT_URI, anon);
-		HashMap<String, String> headers = idm.getHeaders(l2pContext, ownerId, ROOT_URI, anon);
+		ArrayList<Cookie> cookies = idm.getCookies(l2pContext, ownerId, ROOT_URI, anon, deadline);
+		HashMap<String, String> headers = idm.getHeaders(l2pContext, ownerId, ROOT_URI, anon, deadline);
+		// A consent check cut short by the deadline should not be reported as lacking consent
+		deadline.check();
+
+		if (cookies == null)
+			throw new ScrapeException(500, "Could not retrieve cookies.");
+		if (cookies.isEmpty())
+			throw new ScrapeException(401, "Lacking consent for request.");
+		return new OwnerIdentity(ownerId, cookies, headers, anon);
+	}
 
-		if (cookies == null) {
-			browserContext.close();
-			response.addProperty("500", "Could not retrieve cookies.");
-			return response;
+	/**
+	 * Helper function admitting a request to YouTube with the given identity according to its owner's rate limit.
+	 * Anonymous requests which would have to wait too long for the owner are handed over to another user whose cookies
+	 * the requesting user has access to.
+	 *
+	 * @param l2pContext The current execution context from which the method is called
+	 * @param identity The identity chosen for the request
+	 * @param deadline Deadline of the request, requests never wait for a rate limit beyond it
+	 * @return Future of the identity to use, completed once the request may be sent
+	 */
+	private CompletableFuture<OwnerIdentity> admit(ExecutionContext l2pContext, OwnerIdentity identity,
+			Deadline deadline) {
+		if (!ownerRateLimiter.isEnabled())
+			return CompletableFuture.completedFuture(identity);
+		long maxWait = Math.min(ownerRateLimiter.getMaxWaitMillis(), deadline.getRemainingMillis());
+		long wait = ownerRateLimiter.reserve(identity.getOwnerId(), maxWait);
+		if (wait >= 0)
+			return ownerRateLimiter.await(wait).thenApply(admitted -> identity);
+		if (!identity.getAnon()) {
+			Metrics.increment("rateLimit.rejected");
+			return CompletableFuture.failedFuture(
+					new ScrapeException(429, "Too many requests for this user, please try again later."));
 		}
-		if (cookies.isEmpty()) {
-			browserContext.close();
-			response.addProperty("401", "Lacking consent for request.");
-			return response;
+		// Looking up other candidates has to access the network storage from within the service's context
+		return CompletableFuture.supplyAsync(
+				() -> findOtherOwner(l2pContext, identity.getOwnerId(), maxWait, deadline),
+				l2pContext.getExecutor()).thenCompose(admitted -> {
+					if (admitted == null) {
+						Metrics.increment("rateLimit.rejected");
+						return CompletableFuture.failedFuture(
+								new ScrapeException(429, "Too many requests, please try again later."));
+					}
+					Metrics.increment("rateLimit.spillovers");
+					return admitted;
+				});
+	}
+
+	/**
+	 * Helper function choosing another user with consent whose rate limit admits a request soonest
+	 *
+	 * @param l2pContext The current execution context from which the method is called
+	 * @param excludedId The las2peer ID of the user who should not be chosen
+	 * @param maxWait Maximum time in milliseconds to wait for the chosen user's rate limit
+	 * @param deadline Deadline of the request, limits the time spent checking consent
+	 * @return Future of the identity of the chosen user, completed once the request may be sent, or null if no other
+	 * user is available within the maximum wait
+	 */
+	private CompletableFuture<OwnerIdentity> findOtherOwner(ExecutionContext l2pContext, String excludedId,
+			long maxWait, Deadline deadline) {
+		HashSet<String> candidates = idm.getPermissions(l2pContext);
+		String readerId = L2pUtil.getUserId((UserAgent) l2pContext.getMainAgent());
+		HashMap<String, Long> waits = new HashMap<String, Long>();
+		if (candidates != null) {
+			for (String candidateId : candidates) {
+				long wait = ownerRateLimiter.peekWait(candidateId);
+				if (!candidateId.equals(excludedId) && wait <= maxWait)
+					waits.put(candidateId, wait);
+			}
+		}
+		ArrayList<String> ordered = new ArrayList<String>(waits.keySet());
+		ordered.sort(Comparator.comparing(waits::get));
+
+		for (String candidateId : ordered) {
+			if (deadline.isExpired())
+				break;
+			if (!idm.checkConsent(l2pContext, new Consent(candidateId, readerId, rootUri, true), deadline))
+				continue;
+			long wait = ownerRateLimiter.reserve(candidateId, maxWait);
+			if (wait < 0)
+				continue;
+			OwnerIdentity identity;
+			try {
+				identity = getIdentity(l2pContext, candidateId, true, deadline);
+			} catch (ScrapeException e) {
+				continue;
+			}
+			return ownerRateLimiter.await(wait).thenApply(admitted -> identity);
+		}
+		return null;
+	}
+
+	/**
+	 * Helper function recording the owner whose cookies were actually used for an anonymous request, if the request was
+	 * handed over to another owner after the recommendation service matched it
+	 *
+	 * @param l2pContext The current execution context from which the method is called
+	 * @param identity The identity matched for the request
+	 * @param ownerId The las2peer ID of the owner whose cookies were used
+	 * @param request The one time code of the request
+	 * @return Future completed once the owner is recorded
+	 */
+	private CompletableFuture<Void> recordOwner(ExecutionContext l2pContext, OwnerIdentity identity, String ownerId,
+			String request) {
+		if (!identity.getAnon() || identity.getOwnerId().equals(ownerId))
+			return CompletableFuture.completedFuture(null);
+		HashSet<String> candidates = new HashSet<String>();
+		candidates.add(ownerId);
+		return CompletableFuture.runAsync(() -> {
+			try {
+				// Matching the request against the only owner used replaces the match recorded for the request
+				l2pContext.invoke("i5.las2peer.services.hyeYouTubeRecommendations.YouTubeRecommendations",
+						"findMatch", new Serializable[] { candidates, request });
+			} catch (Exception e) {
+				log.printStackTrace(e);
+			}
+		}, l2pContext.getExecutor());
+	}
+
+	/**
+	 * Helper function loading the given YouTube page inside the given browser context (runs on a browser worker)
+	 *
+	 * @param context Browser context with the owner's cookies and headers applied
+	 * @param pageType The YouTube page to load
+	 * @param argument The video ID or search query the page is requested for (ignored for the main page)
+	 * @param deadline Deadline of the request, navigating and waiting for the page is cut short once it expires
+	 * @return A response of YouTube's internal API intercepted while loading the page, the relevant part of the page's
+	 * ytInitialData as Json, or the HTML content of the loaded page
+	 * @throws ScrapeException If YouTube did not respond as expected or the deadline expired
+	 */
+	private LoadedPage loadPage(BrowserContext context, PageType pageType, String argument, Deadline deadline)
+			throws ScrapeException {
+		// The job may have waited in the queue for most of the request's time
+		deadline.check();
+		Page page = context.newPage();
+		resourceFilter.apply(page, pageType);
+		boolean readData = pageExtraction == null || !pageExtraction.equals("content");
+
+		// Watch the page's requests to YouTube's internal API, their responses already hold the recommendations
+		ApiResponseListener apiListener = null;
+		if (interceptApiResponses == null || !interceptApiResponses.equals("false")) {
+			apiListener = new ApiResponseListener(page, YouTubeParser.getApiPath(pageType),
+					YouTubeParser.getRendererKey(pageType), !readData);
+		}
+
+		// ytInitialData is set by an inline script, so there is no need to wait for the page to settle
+		// Navigation gets the time left for the request, Playwright treats a timeout of 0 as no timeout at all
+		Page.NavigateOptions options = new Page.NavigateOptions();
+		options.setTimeout(Math.max(1, deadline.getRemainingMillis()));
+		if (apiListener != null)
+			// The page is only waited for until the first API response holding recommendations arrives
+			options.setWaitUntil(WaitUntilState.COMMIT);
+		else if (readData)
+			options.setWaitUntil(WaitUntilState.DOMCONTENTLOADED);
+		com.microsoft.playwright.Response resp = page.navigate(getPageUrl(pageType, argument), options);
+		// Wait until all content is loaded (doesn't seem to work that well, so let's skip it)
+		// page.waitForLoadState(LoadState.NETWORKIDLE);
+		if (debug != null && debug.equals("true"))
+			page.screenshot(new Page.ScreenshotOptions().setPath(Paths.get("test.png")));
+		if (resp.status() != 200) {
+			log.severe(resp.statusText());
+			throw new ScrapeException(500, getPageErrorMessage(pageType, argument));
+		}
+
+		if (apiListener != null) {
+			String body = apiListener.await(deadline);
+			deadline.check();
+			if (fixtureRecorder != null)
+				recordResponses(resp, apiListener.getResponses());
+			if (body != null) {
+				Metrics.increment("pageExtraction.apiResponse");
+				Metrics.add("pageExtraction.apiResponse.chars", body.length());
+				return LoadedPage.fromApiResponse(body);
+			}
+			// No API response arrived before the page loaded, its state is reached already
+			page.waitForLoadState(readData ? LoadState.DOMCONTENTLOADED : LoadState.LOAD,
+					new Page.WaitForLoadStateOptions().setTimeout(Math.max(1, deadline.getRemainingMillis())));
+		} else {
+			deadline.check();
+			if (fixtureRecorder != null)
+				recordResponses(resp, Collections.emptyList());
+		}
+
+		// Only transfer the renderer holding the recommendations instead of serializing the whole DOM
+		if (readData) {
+			Object initialData = null;
+			try {
+				initialData = page.evaluate("key => { const data = window.ytInitialData; return data && " +
+						"data.contents && data.contents[key] ? JSON.stringify(data.contents[key]) : null; }",
+						YouTubeParser.getRendererKey(pageType));
+			} catch (Exception e) {
+				log.printStackTrace(e);
+			}
+			if (initialData instanceof String) {
+				Metrics.increment("pageExtraction.evaluate");
+				Metrics.add("pageExtraction.evaluate.chars", ((String) initialData).length());
+				return LoadedPage.fromInitialData((String) initialData);
+			}
+			// The HTML parsers need the rendered page
+			page.waitForLoadState(LoadState.LOAD,
+					new Page.WaitForLoadStateOptions().setTimeout(Math.max(1, deadline.getRemainingMillis())));
 		}
+		String html = page.content();
+		Metrics.increment("pageExtraction.content");
+		Metrics.add("pageExtraction.content.chars", html.length());
+		return LoadedPage.fromHtml(html);
+	}
 
+	/**
+	 * Helper function recording the responses YouTube sent to the browser while loading a page (runs on a browser
+	 * worker)
+	 *
+	 * @param pageResp Response to the navigation request, holding the HTML of the page
+	 * @param apiResponses Responses of YouTube's internal API intercepted while loading the page
+	 */
+	private void recordResponses(com.microsoft.playwright.Response pageResp,
+			List<com.microsoft.playwright.Response> apiResponses) {
 		try {
-				// TODO clean this part up a bit
-		        log.info("Setting cookies:");
-		        for (Cookie cookie : cookies) {
-					log.info(cookie.name + ": " + cookie.value);
-					ArrayList<Cookie> singleCookieList = new ArrayList<Cookie>();
-					singleCookieList.add(cookie);
-					try {
-    					    browserContext.addCookies(singleCookieList);
-    					} catch (Exception e) {
-    					    log.printStackTrace(e);
-    					}
-				}
-			if (headers != null)
-				browserContext.setExtraHTTPHeaders(headers);
+			fixtureRecorder.record("GET", pageResp.url(), null, pageResp.text());
+			for (com.microsoft.playwright.Response apiResp : apiResponses) {
+				fixtureRecorder.record(apiResp.request().method(), apiResp.url(), apiResp.request().postData(),
+						apiResp.text());
+			}
 		} catch (Exception e) {
 			log.printStackTrace(e);
-			response.addProperty("500", "Error setting request context.");
-			browserContext.close();
-			return response;
 		}
-		response.addProperty("200", "OK");
-		return response;
+	}
+
+	/**
+	 * Helper function parsing the data obtained by a browser worker
+	 *
+	 * @param pageType The YouTube page the data was obtained from
+	 * @param loadedPage The API response, ytInitialData renderer object, or HTML of the page
+	 * @return Personalized YouTube recommendations
+	 */
+	private ArrayList<Recommendation> parseLoadedPage(PageType pageType, LoadedPage loadedPage) {
+		if (loadedPage.getSource() == LoadedPage.Source.HTML)
+			return parsingChain.parse(pageType, loadedPage.getData());
+		if (loadedPage.getSource() == LoadedPage.Source.INITIAL_DATA)
+			return YouTubeParser.parseInitialData(pageType, loadedPage.getData());
+		try {
+			JsonObject data = JsonParser.parseString(loadedPage.getData()).getAsJsonObject();
+			return YouTubeParser.parseApiResponse(pageType, data);
+		} catch (Exception e) {
+			log.printStackTrace(e);
+			return new ArrayList<Recommendation>();
+		}
+	}
+
+	/**
+	 * Helper function trying to obtain recommendations from the server-rendered HTML of the given page via a plain
+	 * HTTP request, without starting a browser
+	 *
+	 * @param identity The owner whose cookies and headers are used
+	 * @param pageType The YouTube page to request
+	 * @param argument The video ID or search query the page is requested for (ignored for the main page)
+	 * @param deadline Deadline of the request, the HTTP request times out once it expires
+	 * @return Future of the personalized YouTube recommendations, empty if the browser has to be used instead
+	 */
+	private CompletableFuture<ArrayList<Recommendation>> fetchEmbeddedData(OwnerIdentity identity, PageType pageType,
+			String argument, Deadline deadline) {
+		if (httpFastPath != null && httpFastPath.equals("false"))
+			return CompletableFuture.completedFuture(new ArrayList<Recommendation>());
+		// Failed requests are not retried in the browser, so they are counted against YouTube's availability
+		return httpScraper.fetch(identity, getPageUrl(pageType, argument), deadline.getRemainingMillis())
+				.thenApply(html -> YouTubeParser.parseEmbeddedData(pageType, html))
+				.thenApply(recommendations -> {
+					if (recommendations.isEmpty())
+						Metrics.increment("httpFastPath.fallbacks");
+					else
+						Metrics.increment("httpFastPath.hits");
+					return recommendations;
+				});
+	}
+
+	/**
+	 * Helper function obtaining the recommendations displayed on the given YouTube page for the given owner, starting
+	 * a second attempt if the scrape takes longer than usual
+	 *
+	 * @param l2pContext Current las2peer execution context of the requesting user, used to find another owner for the
+	 * second attempt; the scrape must only be shared among requests of this user
+	 * @param identity The owner whose cookies and headers are used
+	 * @param pageType The YouTube page to load
+	 * @param argument The video ID or search query the page is requested for (ignored for the main page)
+	 * @param abandoned Completed once the result is no longer needed, cancels both attempts in that case
+	 * @param deadline Deadline of the scrape, both attempts are cancelled once it expires
+	 * @return Future of the personalized YouTube recommendations and the owner of the attempt which obtained them
+	 */
+	private CompletableFuture<ScrapedPage> scrapeRecommendations(ExecutionContext l2pContext,
+			OwnerIdentity identity, PageType pageType, String argument, CompletableFuture<Void> abandoned,
+			Deadline deadline) {
+		return hedger.execute((hedge, hedgeAbandoned) -> {
+			CompletableFuture<Void> stopped = CompletableFuture.anyOf(hedgeAbandoned, abandoned,
+					deadline.getCancelled()).thenRun(() -> {});
+			if (!hedge) {
+				return scrapeRecommendations(identity, pageType, argument, false, stopped, deadline)
+						.thenApply(found -> new ScrapedPage(identity.getOwnerId(), found));
+			}
+			return getHedgeIdentity(l2pContext, identity, deadline).thenCompose(hedgeIdentity ->
+					scrapeRecommendations(hedgeIdentity, pageType, argument, false, stopped, deadline)
+							.thenApply(found -> new ScrapedPage(hedgeIdentity.getOwnerId(), found)));
+		});
+	}
+
+	/**
+	 * Helper function choosing the owner whose cookies are used for the second attempt of a scrape
+	 *
+	 * @param l2pContext Current las2peer execution context of the requesting user
+	 * @param identity The owner used for the first attempt
+	 * @param deadline Deadline of the request
+	 * @return Future of another owner the requesting user has access to and consent for if the owner is hidden from the
+	 * requesting user and this is enabled, otherwise of the same owner; failed if the owner's rate limit does not
+	 * permit another request right now
+	 */
+	private CompletableFuture<OwnerIdentity> getHedgeIdentity(ExecutionContext l2pContext, OwnerIdentity identity,
+			Deadline deadline) {
+		CompletableFuture<CompletableFuture<OwnerIdentity>> other = CompletableFuture.completedFuture(null);
+		if (identity.getAnon() && hedgeOtherOwners != null && hedgeOtherOwners.equals("true")) {
+			other = CompletableFuture.supplyAsync(() -> findOtherOwner(l2pContext, identity.getOwnerId(), 0,
+					deadline), l2pContext.getExecutor());
+		}
+		return other.thenCompose(otherIdentity -> {
+			if (otherIdentity != null) {
+				Metrics.increment("hedge.otherOwner");
+				return otherIdentity;
+			}
+			// A hedge must never make the owner wait, it is only worth it if it can start right away
+			if (!ownerRateLimiter.tryAcquire(identity.getOwnerId()))
+				return CompletableFuture.failedFuture(new ScrapeException(429, "Owner's rate limit exceeded."));
+			return CompletableFuture.completedFuture(identity);
+		});
+	}
+
+	/**
+	 * Helper function obtaining the recommendations displayed on the given YouTube page for the given owner, trying
+	 * the plain HTTP request first and falling back to a browser
+	 *
+	 * @param identity The owner whose cookies and headers are used
+	 * @param pageType The YouTube page to load
+	 * @param argument The video ID or search query the page is requested for (ignored for the main page)
+	 * @param prefetch Whether the page is scraped speculatively, before being requested
+	 * @param abandoned Completed once the result is no longer needed, cancels the browser job in that case
+	 * @param deadline Deadline of the request, limits the time spent on HTTP requests and in the browser
+	 * @return Future of the personalized YouTube recommendations
+	 */
+	private CompletableFuture<ArrayList<Recommendation>> scrapeRecommendations(OwnerIdentity identity,
+			PageType pageType, String argument, boolean prefetch, CompletableFuture<Void> abandoned,
+			Deadline deadline) {
+		return callUpstream(() -> fetchEmbeddedData(identity, pageType, argument, deadline).thenCompose(embedded -> {
+			// Only start a browser if the embedded data is missing from the plain HTML response
+			if (!embedded.isEmpty())
+				return CompletableFuture.completedFuture(embedded);
+			CompletableFuture<LoadedPage> loading = engine.submit(identity,
+					context -> loadPage(context, pageType, argument, deadline), prefetch);
+			// The worker closes the browser context of a cancelled job instead of returning it to the pool
+			abandoned.thenRun(() -> loading.cancel(false));
+			// Parse outside of the browser worker, so it can take on the next page right away
+			return loading.thenApplyAsync(loadedPage -> parseLoadedPage(pageType, loadedPage));
+		}), deadline).thenApply(recommendations -> {
+			recommendationCache.put(identity.getOwnerId(), pageType, argument, recommendations, prefetch);
+			return recommendations;
+		});
+	}
+
+	/**
+	 * Helper function sending requests to YouTube only if the adaptive concurrency limit and the circuit breaker
+	 * permit, and reporting the outcome back to both
+	 *
+	 * @param call Sends the requests to YouTube
+	 * @param deadline Deadline of the requests, tells timeouts apart from attempts which were no longer needed
+	 * @param <T> Type of the result
+	 * @return Future of the result, or failed with UpstreamUnavailableException if the requests were not sent
+	 */
+	private <T> CompletableFuture<T> callUpstream(Supplier<CompletableFuture<T>> call, Deadline deadline) {
+		if (!concurrencyLimiter.tryAcquire()) {
+			return CompletableFuture.failedFuture(
+					new UpstreamUnavailableException("YouTube is responding slowly, please try again later.", 1));
+		}
+		CircuitBreaker.Permit permit = circuitBreaker.tryAcquire();
+		if (permit == null) {
+			concurrencyLimiter.cancel();
+			return CompletableFuture.failedFuture(new UpstreamUnavailableException(
+					"YouTube is currently unavailable, please try again later.",
+					circuitBreaker.getRetryAfterSeconds()));
+		}
+		long start = System.nanoTime();
+		CompletableFuture<T> result;
+		try {
+			result = call.get();
+		} catch (Exception e) {
+			result = CompletableFuture.failedFuture(e);
+		}
+		return result.whenComplete((value, error) -> {
+			// Errors caused by the request itself or by the service's own limits say nothing about YouTube
+			// Neither do attempts cancelled before the deadline because another attempt finished first or nobody
+			// waits for the result anymore, while YouTube not responding before the deadline counts as failure
+			boolean failed = false;
+			boolean abandoned = false;
+			if (error != null) {
+				int status = ScrapeException.from(error).getStatus();
+				abandoned = ScrapeException.isCancellation(error) && !deadline.isExpired();
+				failed = status >= 500 && status != 503 && !abandoned;
+			}
+			concurrencyLimiter.release(start, failed);
+			if (abandoned)
+				circuitBreaker.cancel(permit);
+			else
+				circuitBreaker.record(permit, failed);
+		});
+	}
+
+	/**
+	 * Helper function building the key under which concurrent scrapes of the same page are shared. Anonymous scrapes
+	 * may be handed over to another owner chosen by the permissions and consent of the requesting user, so they are
+	 * only shared among anonymous requests of the same user.
+	 *
+	 * @param l2pContext Current las2peer execution context
+	 * @param identity The owner whose cookies and headers are used
+	 * @param pageType The YouTube page to load
+	 * @param argument The video ID or search query the page is requested for (ignored for the main page)
+	 * @return Key of the scrape
+	 */
+	private String getFlightKey(ExecutionContext l2pContext, OwnerIdentity identity, PageType pageType,
+			String argument) {
+		String key = RecommendationCache.getKey(identity.getOwnerId(), pageType, argument);
+		if (!identity.getAnon())
+			return key;
+		return key + "#anon:" + L2pUtil.getUserId((UserAgent) l2pContext.getMainAgent());
+	}
+
+	/**
+	 * Helper function speculatively scraping the recommendations shown next to the given video into the cache
+	 *
+	 * @param l2pContext Current las2peer execution context
+	 * @param identity The owner whose cookies and headers are used
+	 * @param videoId The YouTube video ID the user is likely to watch next
+	 * @return Future completed once the recommendations are cached, with false if they were not scraped for the
+	 * prefetch because they were already cached or being scraped for another request
+	 */
+	private CompletableFuture<Boolean> prefetchAside(ExecutionContext l2pContext, OwnerIdentity identity,
+			String videoId) {
+		if (recommendationCache.contains(identity.getOwnerId(), PageType.WATCH, videoId))
+			return CompletableFuture.completedFuture(false);
+		AtomicBoolean scraped = new AtomicBoolean(false);
+		return scrapeFlights.execute(getFlightKey(l2pContext, identity, PageType.WATCH, videoId),
+				abandoned -> {
+					scraped.set(true);
+					Deadline deadline = newDeadline(null);
+					return scrapeRecommendations(identity, PageType.WATCH, videoId, true,
+							abandoned.acceptEither(deadline.getCancelled(), done -> {}), deadline)
+							.thenApply(found -> new ScrapedPage(identity.getOwnerId(), found))
+							.whenComplete((page, error) -> deadline.finish());
+				}).thenApply(page -> scraped.get());
+	}
+
+	/**
+	 * Helper function resolving the identity (cookies and headers) used for a request from within the service's context
+	 *
+	 * @param l2pContext Current las2peer execution context
+	 * @param ownerId If the request is made for a particular user, this refers to this user's las2peer ID
+	 * @param request The one time code of the request
+	 * @param deadline Deadline of the request
+	 * @return Future of the identity of the cookie owner whose cookies are used
+	 */
+	private CompletableFuture<OwnerIdentity> resolveIdentityAsync(ExecutionContext l2pContext, String ownerId,
+			String request, Deadline deadline) {
+		// The identity manager has to access the network storage from within the service's context
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return resolveIdentity(l2pContext, ownerId, request, deadline);
+			} catch (ScrapeException e) {
+				throw new CompletionException(e);
+			}
+		}, l2pContext.getExecutor());
+	}
+
+	/**
+	 * Helper function obtaining the recommendations displayed on the given YouTube page for the given owner, either
+	 * from the cache or by scraping the page. Concurrent requests for the same page share a single scrape, which is
+	 * admitted by the owner's rate limit only once. The shared scrape runs until the configured request timeout and is
+	 * only cancelled once every request waiting for it has given up. If the scrape was handed over to another owner,
+	 * this owner is recorded for the request.
+	 *
+	 * @param l2pContext Current las2peer execution context
+	 * @param identity The owner whose cookies and headers are used
+	 * @param pageType The YouTube page to load
+	 * @param argument The video ID or search query the page is requested for (ignored for the main page)
+	 * @param request The one time code of the request
+	 * @param admitted Whether the request was already admitted by the owner's rate limit
+	 * @param deadline Deadline of the request, the request stops waiting for the shared scrape once it expires
+	 * @return Future of the personalized YouTube recommendations
+	 */
+	private CompletableFuture<ArrayList<Recommendation>> getRecommendations(ExecutionContext l2pContext,
+			OwnerIdentity identity, PageType pageType, String argument, String request, boolean admitted,
+			Deadline deadline) {
+		ArrayList<Recommendation> recommendations = recommendationCache.get(identity.getOwnerId(), pageType, argument);
+		if (recommendations != null)
+			return CompletableFuture.completedFuture(recommendations);
+		CompletableFuture<ScrapedPage> shared = scrapeFlights.execute(
+				getFlightKey(l2pContext, identity, pageType, argument), abandoned -> {
+					// Not bound to the request which happens to start the scrape, others may wait longer for it
+					Deadline flightDeadline = newDeadline(null);
+					CompletableFuture<OwnerIdentity> admission = admitted ? CompletableFuture.completedFuture(identity)
+							: admit(l2pContext, identity, flightDeadline);
+					return admission.thenCompose(scrapeIdentity -> {
+						// Every request may have given up while waiting for the rate limit
+						if (abandoned.isDone())
+							return CompletableFuture.failedFuture(new CancellationException());
+						return scrapeRecommendations(l2pContext, scrapeIdentity, pageType, argument, abandoned,
+								flightDeadline);
+					}).whenComplete((page, error) -> flightDeadline.finish());
+				});
+		deadline.getCancelled().thenRun(() -> shared.cancel(false));
+		return shared.thenCompose(page -> recordOwner(l2pContext, identity, page.getOwnerId(), request)
+				.thenApply(recorded -> page.getRecommendations())).exceptionallyCompose(e -> {
+			// Outdated recommendations are better than none while YouTube is unavailable
+			ArrayList<Recommendation> stale = null;
+			if (ScrapeException.from(e) instanceof UpstreamUnavailableException &&
+					(serveStale == null || !serveStale.equals("false")))
+				stale = recommendationCache.getStale(identity.getOwnerId(), pageType, argument);
+			if (stale == null)
+				return CompletableFuture.failedFuture(e);
+			Metrics.increment("upstream.staleServed");
+			return CompletableFuture.completedFuture(stale);
+		});
+	}
+
+	/**
+	 * Helper function obtaining the given number of recommendations of the given page starting at the given position,
+	 * using plain HTTP requests only. The request has to be admitted by the owner's rate limit before.
+	 *
+	 * @param l2pContext Current las2peer execution context
+	 * @param identity The owner whose cookies and headers are used
+	 * @param pageType The YouTube page to load (main page or search results)
+	 * @param argument The search query the page is requested for (ignored for the main page)
+	 * @param limit Maximum number of recommendations to return
+	 * @param start Position decoded from the cursor returned along with a previous response
+	 * @param request The one time code of the request
+	 * @param deadline Deadline of the request
+	 * @return Future of the personalized YouTube recommendations and the cursor of the following ones
+	 */
+	private CompletableFuture<ContinuationClient.Result> getRecommendationPage(ExecutionContext l2pContext,
+			OwnerIdentity identity, PageType pageType, String argument, int limit, ContinuationClient.Position start,
+			String request, Deadline deadline) {
+		return callUpstream(() -> continuationClient.fetch(identity, getPageUrl(pageType, argument), limit, start,
+				deadline), deadline).thenCompose(result -> {
+					if (!start.isTop() || !result.getRecommendations().isEmpty())
+						return CompletableFuture.completedFuture(result);
+					// The first screen could not be read from the HTML, the browser can at least provide this one
+					return getRecommendations(l2pContext, identity, pageType, argument, request, true, deadline)
+							.thenApply(recommendations -> new ContinuationClient.Result(new ArrayList<Recommendation>(
+									recommendations.subList(0, Math.min(limit, recommendations.size()))), null));
+				});
+	}
+
+	/**
+	 * Helper function building the response body returned for the given recommendations
+	 *
+	 * @param recommendations Personalized YouTube recommendations
+	 * @param request The one time code of the request
+	 * @return Recommendations followed by the one time code of the request as Json array
+	 */
+	private JsonArray toResponseBody(ArrayList<Recommendation> recommendations, String request) {
+		return toResponseBody(recommendations, request, null);
+	}
+
+	/**
+	 * Helper function building the response body returned for the given recommendations
+	 *
+	 * @param recommendations Personalized YouTube recommendations
+	 * @param request The one time code of the request
+	 * @param nextCursor Cursor of the following recommendations, added next to the one time code if not null
+	 * @return Recommendations followed by the one time code of the request as Json array
+	 */
+	private JsonArray toResponseBody(ArrayList<Recommendation> recommendations, String request, String nextCursor) {
+		JsonArray responseBody = ParserUtil.toJsonArray(recommendations);
+		JsonObject oneTimeCode = new JsonObject();
+		oneTimeCode.addProperty("oneTimeCode", request);
+		if (nextCursor != null)
+			oneTimeCode.addProperty("nextCursor", nextCursor);
+		responseBody.add(oneTimeCode);
+		return responseBody;
+	}
+
+	/**
+	 * Helper function loading the given YouTube page with the cookies of an appropriate user and parsing the
+	 * displayed recommendations
+	 *
+	 * @param pageType The YouTube page to load
+	 * @param argument The video ID or search query the page is requested for (ignored for the main page)
+	 * @param ownerId If the request is made for a particular user, this refers to this user's las2peer ID
+	 * @param limit Maximum number of recommendations to return, null to return the first screen of the page
+	 * @param cursor Cursor returned along with a previous response, null to start at the top of the page
+	 * @param deadline Deadline of the request, work still in progress is cancelled once it expires
+	 * @return Future of the personalized YouTube recommendations followed by the one time code of the request
+	 */
+	private CompletableFuture<Response> scrapePage(PageType pageType, String argument, String ownerId,
+			String limit, String cursor, Deadline deadline) {
+		// Get execution context and resolve identity (cookies and headers)
+		ExecutionContext l2pContext;
+		try {
+			l2pContext = (ExecutionContext) Context.getCurrent();
+		} catch (Exception e) {
+			log.printStackTrace(e);
+			return CompletableFuture.completedFuture(
+					buildErrorResponse(new ScrapeException(500, "Error getting execution context.")));
+		}
+
+		// Technically not what the request string was originally intended for, but useful for user study
+		// Every request gets its own code, even if it shares the scraped recommendations with other requests
+		String request = L2pUtil.randomString(20);
+		// TODO replace random String with requestUri from request data
+		boolean paginated = limit != null || cursor != null;
+		int maxResults = Math.max(1, Math.min(MAX_PAGE_LIMIT, ParserUtil.toInt(limit, DEFAULT_PAGE_LIMIT)));
+		// Malformed cursors are rejected before spending any of the owner's or YouTube's capacity on them
+		ContinuationClient.Position start;
+		try {
+			start = ContinuationClient.decodeCursor(pageType, cursor);
+		} catch (ScrapeException e) {
+			return CompletableFuture.completedFuture(buildErrorResponse(e));
+		}
+		CompletableFuture<Response> response = resolveIdentityAsync(l2pContext, ownerId, request, deadline)
+				.thenCompose(identity -> {
+					if (paginated) {
+						return admit(l2pContext, identity, deadline).thenCompose(admitted ->
+								recordOwner(l2pContext, identity, admitted.getOwnerId(), request).thenCompose(
+										recorded -> getRecommendationPage(l2pContext, admitted, pageType, argument,
+												maxResults, start, request, deadline)));
+					}
+					return getRecommendations(l2pContext, identity, pageType, argument, request, false, deadline)
+							.thenApply(found -> {
+								// The user is likely to watch one of the recommended videos next
+								if (pageType == PageType.WATCH)
+									prefetcher.prefetch(identity, found, videoId ->
+											recommendationCache.contains(identity.getOwnerId(), pageType, videoId),
+											videoId -> prefetchAside(l2pContext, identity, videoId));
+								return new ContinuationClient.Result(found, null);
+							});
+				})
+				.thenApply(result -> buildResponse(200,
+						toResponseBody(result.getRecommendations(), request, result.getNextCursor()).toString()));
+		return deadline.bind(response).exceptionally(e -> buildErrorResponse(ScrapeException.from(e)));
+	}
+
+	/**
+	 * Helper function scraping all pages requested in a batch, resolving the identity of each cookie owner only once
+	 *
+	 * @param items Json array of objects holding the type of page, the video ID or search query, and optionally the
+	 * las2peer ID of the user to imitate
+	 * @param deadline Deadline of the whole batch, items not finished by then fail with status 504
+	 * @return Future of a Json array holding the status and the result or error message of each item
+	 */
+	private CompletableFuture<Response> scrapeBatch(JsonArray items, Deadline deadline) {
+		ExecutionContext l2pContext;
+		try {
+			l2pContext = (ExecutionContext) Context.getCurrent();
+		} catch (Exception e) {
+			log.printStackTrace(e);
+			return CompletableFuture.completedFuture(
+					buildErrorResponse(new ScrapeException(500, "Error getting execution context.")));
+		}
+
+		// Items requested for the same user share the identity, but every item gets its own one time code. Anonymous
+		// items are matched with a user one by one, since the match is registered under the item's one time code.
+		HashMap<String, CompletableFuture<OwnerIdentity>> identities =
+				new HashMap<String, CompletableFuture<OwnerIdentity>>();
+		int anonymous = 0;
+		ArrayList<CompletableFuture<JsonObject>> results = new ArrayList<CompletableFuture<JsonObject>>();
+		for (JsonElement itemElem : items) {
+			JsonObject item;
+			PageType pageType;
+			String argument;
+			String ownerId;
+			try {
+				item = itemElem.getAsJsonObject();
+				pageType = PageType.fromName(item.get("type").getAsString());
+				argument = item.has("argument") ? item.get("argument").getAsString() : null;
+				ownerId = item.has("user") ? item.get("user").getAsString() : "";
+			} catch (Exception e) {
+				results.add(CompletableFuture.completedFuture(
+						toBatchResult(new ScrapeException(400, "Malformed batch item."))));
+				continue;
+			}
+			if (pageType == null) {
+				results.add(CompletableFuture.completedFuture(
+						toBatchResult(new ScrapeException(400, "Unknown page type."))));
+				continue;
+			}
+			if (pageType != PageType.MAIN && (argument == null || argument.length() == 0)) {
+				results.add(CompletableFuture.completedFuture(toBatchResult(new ScrapeException(400,
+						pageType == PageType.WATCH ? "Missing video Id." : "Missing search query."))));
+				continue;
+			}
+			String request = L2pUtil.randomString(20);
+			CompletableFuture<OwnerIdentity> identity;
+			if (ownerId.length() == 0) {
+				identity = resolveIdentityAsync(l2pContext, ownerId, request, deadline);
+				++anonymous;
+			} else {
+				identity = identities.computeIfAbsent(ownerId,
+						id -> resolveIdentityAsync(l2pContext, id, request, deadline));
+			}
+			CompletableFuture<JsonObject> result = identity
+					.thenCompose(owner -> getRecommendations(l2pContext, owner, pageType, argument, request,
+							false, deadline))
+					.thenApply(recommendations -> {
+						JsonObject itemResult = new JsonObject();
+						itemResult.addProperty("status", 200);
+						itemResult.add("result", toResponseBody(recommendations, request));
+						return itemResult;
+					});
+			results.add(deadline.bind(result).exceptionally(e -> toBatchResult(ScrapeException.from(e))));
+		}
+		Metrics.add("batch.items", results.size());
+		Metrics.add("batch.identities", identities.size() + anonymous);
+
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+			JsonArray responseBody = new JsonArray();
+			for (CompletableFuture<JsonObject> result : results)
+				responseBody.add(result.join());
+			return buildResponse(200, responseBody.toString());
+		});
+	}
+
+	// Build result of failed batch item in the form {"status": <status>, "msg": "<message>"}
+	private JsonObject toBatchResult(ScrapeException error) {
+		if (error.getCause() != null)
+			log.printStackTrace(error.getCause());
+		JsonObject result = new JsonObject();
+		result.addProperty("status", error.getStatus());
+		result.addProperty("msg", error.getMessage());
+		return result;
+	}
+
+	/**
+	 * Helper function creating the deadline of a new request
+	 *
+	 * @param timeout Value of the X-Request-Timeout header in seconds, may only shorten the configured request timeout
+	 * @return Deadline of the request
+	 */
+	private Deadline newDeadline(String timeout) {
+		int seconds = ParserUtil.toInt(requestTimeout, 60);
+		int requested = ParserUtil.toInt(timeout, seconds);
+		if (requested > 0)
+			seconds = Math.min(seconds, requested);
+		return new Deadline(seconds * 1000L);
+	}
+
+	/**
+	 * Helper function waiting for the given response for at most the remaining time of the request. Work still in
+	 * progress is cancelled once the deadline expires.
+	 *
+	 * @param response Future of the response to the request
+	 * @param deadline Deadline of the request
+	 * @return The response, or an error response with status 504 if the deadline expired first
+	 */
+	private Response awaitResponse(CompletableFuture<Response> response, Deadline deadline) {
+		try {
+			Response answer = response.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+			deadline.finish();
+			return answer;
+		} catch (TimeoutException e) {
+			Metrics.increment("requests.timeouts");
+			deadline.cancel();
+			response.cancel(false);
+			return buildErrorResponse(new ScrapeException(504, "Request timed out."));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			deadline.cancel();
+			response.cancel(false);
+			return buildErrorResponse(new ScrapeException(500, "Interrupted while waiting for response."));
+		} catch (Exception e) {
+			deadline.finish();
+			return buildErrorResponse(ScrapeException.from(e));
+		}
+	}
+
+	// Build error response in the form {"<status>": "<message>"}
+	private Response buildErrorResponse(ScrapeException error) {
+		if (error.getCause() != null)
+			log.printStackTrace(error.getCause());
+		JsonObject response = new JsonObject();
+		response.addProperty(String.valueOf(error.getStatus()), error.getMessage());
+		if (error instanceof UpstreamUnavailableException) {
+			return Response.fromResponse(buildResponse(error.getStatus(), response.toString()))
+					.header("Retry-After", ((UpstreamUnavailableException) error).getRetryAfterSeconds()).build();
+		}
+		return buildResponse(error.getStatus(), response.toString());
 	}
 
 	// Add headers and build response
@@ -482,6 +1468,9 @@ public class YouTubeProxy extends RESTService {
 	 * Main page showing some generally interesting YouTube videos
 	 *
 	 * @param ownerId A las2peer user ID to imitate a specific user
+	 * @param limit Maximum number of recommendations to return, further ones are requested using the returned cursor
+	 * @param cursor The nextCursor returned along with the previous recommendations
+	 * @param timeout Time in seconds after which the request is aborted, may only shorten the configured timeout
 	 * @return Personalized YouTube recommendations
 	 */
 	@GET
@@ -494,54 +1483,12 @@ public class YouTubeProxy extends RESTService {
 			value = { @ApiResponse(
 					code = HttpURLConnection.HTTP_OK,
 					message = "OK") })
-	public Response getMainPage(@QueryParam("user") String ownerId) {
-		// Get execution context and set browser context (cookies and headers)
-		ExecutionContext l2pContext;
-		JsonObject response = new JsonObject();
-		try {
-			l2pContext = (ExecutionContext) Context.getCurrent();
-		} catch (Exception e) {
-			log.printStackTrace(e);
-			response.addProperty("500", "Error getting execution context.");
-			return buildResponse(500, response.toString());
-		}
-
-		BrowserContext context = browser.newContext();
-		// Technically not what the request string was originally intended for, but useful for user study
-		String request = L2pUtil.randomString(20);
-		// TODO replace random String with requestUri from request data
-		response = setContext(l2pContext, context, ownerId, request);
-		if (!response.has("200"))
-			return buildResponse(Integer.parseInt((String) response.keySet().toArray()[0]), response.toString());
-		else
-			response = new JsonObject();
-
-		try {
-			Page page = context.newPage();
-			com.microsoft.playwright.Response resp = page.navigate(YOUTUBE_MAIN_PAGE);
-			// Wait until all content is loaded (doesn't seem to work that well, so let's skip it)
-			// page.waitForLoadState(LoadState.NETWORKIDLE);
-			if (debug != null && debug.equals("true"))
-				page.screenshot(new Page.ScreenshotOptions().setPath(Paths.get("test.png")));
-			if (resp.status() != 200) {
-				log.severe(resp.statusText());
-				response.addProperty("500", "Could not get YouTube main page.");
-				context.close();
-				return buildResponse(500, response.toString());
-			}
-			ArrayList<Recommendation> recommendations = YouTubeParser.mainPage(page.content());
-			context.close();
-			JsonArray responseBody = ParserUtil.toJsonArray(recommendations);
-			JsonObject oneTimeCode = new JsonObject();
-			oneTimeCode.addProperty("oneTimeCode", request);
-			responseBody.add(oneTimeCode);
-			return buildResponse(200, responseBody.toString());
-		} catch (Exception e) {
-			log.printStackTrace(e);
-			context.close();
-			response.addProperty("500", "Unspecified server error.");
-			return buildResponse(500, response.toString());
-		}
+	public Response getMainPage(@QueryParam("user") String ownerId,
+								@QueryParam("limit") String limit,
+								@QueryParam("cursor") String cursor,
+								@HeaderParam("X-Request-Timeout") String timeout) {
+		Deadline deadline = newDeadline(timeout);
+		return awaitResponse(scrapePage(PageType.MAIN, null, ownerId, limit, cursor, deadline), deadline);
 	}
 
 	/**
@@ -549,6 +1496,7 @@ public class YouTubeProxy extends RESTService {
 	 *
 	 * @param videoId The YouTube video ID of the currently playing video
 	 * @param ownerId A las2peer user ID to imitate a specific user
+	 * @param timeout Time in seconds after which the request is aborted, may only shorten the configured timeout
 	 * @return Personalized YouTube recommendations
 	 */
 	@GET
@@ -562,59 +1510,15 @@ public class YouTubeProxy extends RESTService {
 					code = HttpURLConnection.HTTP_OK,
 					message = "OK") })
 	public Response getAside(@QueryParam("v") String videoId,
-							 @QueryParam("user") String ownerId) {
-		// Get execution context and set browser context (cookies and headers)
-		ExecutionContext l2pContext;
-		JsonObject response = new JsonObject();
-		try {
-			l2pContext = (ExecutionContext) Context.getCurrent();
-		} catch (Exception e) {
-			log.printStackTrace(e);
-			response.addProperty("500", "Error getting execution context.");
-			return buildResponse(500, response.toString());
-		}
-
+							 @QueryParam("user") String ownerId,
+							 @HeaderParam("X-Request-Timeout") String timeout) {
 		if (videoId == null || videoId.length() == 0) {
+			JsonObject response = new JsonObject();
 			response.addProperty("400", "Missing video Id.");
 			return buildResponse(400, response.toString());
 		}
-
-		BrowserContext context = browser.newContext();
-		// Technically not what the request string was originally intended for, but useful for user study
-		String request = L2pUtil.randomString(20);
-		// TODO replace random String with requestUri from request data
-		response = setContext(l2pContext, context, ownerId, request);
-		if (!response.has("200"))
-			return buildResponse(Integer.parseInt((String) response.keySet().toArray()[0]), response.toString());
-		else
-			response = new JsonObject();
-
-		try {
-			Page page = context.newPage();
-			com.microsoft.playwright.Response resp = page.navigate(getVideoUrl(videoId));
-			// Wait until all content is loaded (doesn't seem to work that well, so let's skip it)
-			// page.waitForLoadState(LoadState.NETWORKIDLE);
-			if (debug != null && debug.equals("true"))
-				page.screenshot(new Page.ScreenshotOptions().setPath(Paths.get("test.png")));
-			if (resp.status() != 200) {
-				log.severe(resp.statusText());
-				response.addProperty("500", "Could not get recommendations for video " + videoId);
-				context.close();
-				return buildResponse(500, response.toString());
-			}
-			ArrayList<Recommendation> recommendations = YouTubeParser.aside(page.content());
-			context.close();
-			JsonArray responseBody = ParserUtil.toJsonArray(recommendations);
-			JsonObject oneTimeCode = new JsonObject();
-			oneTimeCode.addProperty("oneTimeCode", request);
-			responseBody.add(oneTimeCode);
-			return buildResponse(200, responseBody.toString());
-		} catch (Exception e) {
-			log.printStackTrace(e);
-			context.close();
-			response.addProperty("500", "Unspecified server error.");
-			return buildResponse(500, response.toString());
-		}
+		Deadline deadline = newDeadline(timeout);
+		return awaitResponse(scrapePage(PageType.WATCH, videoId, ownerId, null, null, deadline), deadline);
 	}
 
 	/**
@@ -622,6 +1526,9 @@ public class YouTubeProxy extends RESTService {
 	 *
 	 * @param searchQuery The entered search query
 	 * @param ownerId A las2peer user ID to imitate a specific user
+	 * @param limit Maximum number of search results to return, further ones are requested using the returned cursor
+	 * @param cursor The nextCursor returned along with the previous search results
+	 * @param timeout Time in seconds after which the request is aborted, may only shorten the configured timeout
 	 * @return Personalized YouTube video search results
 	 */
 	@GET
@@ -635,59 +1542,76 @@ public class YouTubeProxy extends RESTService {
 					code = HttpURLConnection.HTTP_OK,
 					message = "OK") })
 	public Response getSearchResults(@QueryParam("search_query") String searchQuery,
-									 @QueryParam("user") String ownerId) {
-		// Get execution context and set browser context (cookies and headers)
-		ExecutionContext l2pContext;
-		JsonObject response = new JsonObject();
-		try {
-			l2pContext = (ExecutionContext) Context.getCurrent();
-		} catch (Exception e) {
-			log.printStackTrace(e);
-			response.addProperty("500", "Error getting execution context.");
-			return buildResponse(500, response.toString());
-		}
-
+									 @QueryParam("user") String ownerId,
+									 @QueryParam("limit") String limit,
+									 @QueryParam("cursor") String cursor,
+									 @HeaderParam("X-Request-Timeout") String timeout) {
 		if (searchQuery == null || searchQuery.length() == 0) {
+			JsonObject response = new JsonObject();
 			response.addProperty("400", "Missing search query.");
 			return buildResponse(400, response.toString());
 		}
+		Deadline deadline = newDeadline(timeout);
+		return awaitResponse(scrapePage(PageType.RESULTS, searchQuery, ownerId, limit, cursor, deadline), deadline);
+	}
 
-		BrowserContext context = browser.newContext();
-		// Technically not what the request string was originally intended for, but useful for user study
-		String request = L2pUtil.randomString(20);
-		// TODO replace random String with requestUri from request data
-		response = setContext(l2pContext, context, ownerId, request);
-		if (!response.has("200"))
-			return buildResponse(Integer.parseInt((String) response.keySet().toArray()[0]), response.toString());
-		else
-			response = new JsonObject();
-
+	/**
+	 * Recommendations of several YouTube pages requested at once
+	 *
+	 * @param reqData Json array of objects with the keys "type" (main, watch, or results), "argument" (the video ID
+	 * or search query), and optionally "user" (a las2peer user ID to imitate a specific user)
+	 * @param timeout Time in seconds after which the request is aborted, may only shorten the configured timeout
+	 * @return The status and the personalized YouTube recommendations or error message of each requested page, in
+	 * the order of the request
+	 */
+	@POST
+	@Path("/batch")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@ApiOperation(
+			value = "YouTube/Batch",
+			notes = "Returns the recommendations of several YouTube pages")
+	@ApiResponses(
+			value = { @ApiResponse(
+					code = HttpURLConnection.HTTP_OK,
+					message = "OK") })
+	public Response getBatch(String reqData, @HeaderParam("X-Request-Timeout") String timeout) {
+		JsonArray items;
 		try {
-			Page page = context.newPage();
-			com.microsoft.playwright.Response resp = page.navigate(getResultsUrl(searchQuery));
-			// Wait until all content is loaded (doesn't seem to work that well, so let's skip it)
-			// page.waitForLoadState(LoadState.NETWORKIDLE);
-			if (debug != null && debug.equals("true"))
-				page.screenshot(new Page.ScreenshotOptions().setPath(Paths.get("test.png")));
-			if (resp.status() != 200) {
-				log.severe(resp.statusText());
-				response.addProperty("500", "Could not get YouTube results for query " + searchQuery);
-				context.close();
-				return buildResponse(500, response.toString());
-			}
-			ArrayList<Recommendation> recommendations = YouTubeParser.resultsPage(page.content());
-			context.close();
-			JsonArray responseBody = ParserUtil.toJsonArray(recommendations);
-			JsonObject oneTimeCode = new JsonObject();
-			oneTimeCode.addProperty("oneTimeCode", request);
-			responseBody.add(oneTimeCode);
-			return buildResponse(200, responseBody.toString());
+			items = ParserUtil.toJsonArray(reqData);
 		} catch (Exception e) {
-			log.printStackTrace(e);
-			context.close();
-			response.addProperty("500", "Unspecified server error");
-			return buildResponse(500, response.toString());
+			items = null;
+		}
+		JsonObject response = new JsonObject();
+		if (items == null) {
+			response.addProperty("400", "Malformed POST data.");
+			return buildResponse(400, response.toString());
 		}
+		if (items.size() > ParserUtil.toInt(batchMaxItems, 20)) {
+			response.addProperty("400", "Too many items in batch.");
+			return buildResponse(400, response.toString());
+		}
+		Deadline deadline = newDeadline(timeout);
+		return awaitResponse(scrapeBatch(items, deadline), deadline);
+	}
+
+	/**
+	 * Exposes the collected performance metrics of the service
+	 *
+	 * @return Counters, timers, and gauges as Json object
+	 */
+	@GET
+	@Path("/metrics")
+	@Produces(MediaType.APPLICATION_JSON)
+	@ApiOperation(
+			value = "YouTube/Metrics",
+			notes = "Returns performance metrics of the service")
+	@ApiResponses(
+			value = { @ApiResponse(
+					code = HttpURLConnection.HTTP_OK,
+					message = "OK") })
+	public Response getMetrics() {
+		return buildResponse(200, Metrics.toJson().toString());
 	}
 
 	/**
@@ -0,0 +1,25 @@
+package i5.las2peer.services.hyeYouTubeProxy.identityManagement;
+
+/**
+ * IdentityChangeListener
+ *
+ * Callback used by the IdentityManager to announce that the YouTube identity (cookies and headers) or the consent of
+ * a given cookie owner changed, so that anything derived from the previous state can be discarded.
+ */
+public interface IdentityChangeListener {
+
+    /**
+     * Called after the cookies or headers of the given owner were stored or removed
+     *
+     * @param ownerId The las2peer ID of the user whose identity changed
+     */
+    void identityChanged(String ownerId);
+
+    /**
+     * Called after the given owner granted or revoked consent
+     *
+     * @param ownerId The las2peer ID of the user whose consent changed
+     */
+    default void consentChanged(String ownerId) {
+    }
+}
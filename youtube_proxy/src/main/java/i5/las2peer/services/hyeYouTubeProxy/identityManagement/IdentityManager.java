@@ -25,6 +25,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import com.microsoft.playwright.options.Cookie;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Deadline;
 import i5.las2peer.services.hyeYouTubeProxy.lib.L2pUtil;
 import i5.las2peer.services.hyeYouTubeProxy.lib.ParserUtil;
 import i5.las2peer.tools.CryptoTools;
@@ -37,6 +38,8 @@ import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * IdentityManager.
@@ -57,6 +60,7 @@ public class IdentityManager {
     private String serviceAgentPw;
     private SecretKey secretKey;
     private KeyPair signKey;
+    private final List<IdentityChangeListener> listeners = new CopyOnWriteArrayList<IdentityChangeListener>();
 
     private final String COOKIE_SUFFIX = "_cookies";
     private final String HEADER_SUFFIX = "_headers";
@@ -85,6 +89,45 @@ public class IdentityManager {
         }
     }
 
+    /**
+     * Registers a listener which is notified whenever a user's cookies, headers, or consent change
+     *
+     * @param listener The object to notify
+     */
+    public void addIdentityChangeListener(IdentityChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Informs all registered listeners that the cookies or headers of the given user changed
+     *
+     * @param ownerId The las2peer ID of the user whose identity changed
+     */
+    private void notifyIdentityChanged(String ownerId) {
+        for (IdentityChangeListener listener : listeners) {
+            try {
+                listener.identityChanged(ownerId);
+            } catch (Exception e) {
+                log.printStackTrace(e);
+            }
+        }
+    }
+
+    /**
+     * Informs all registered listeners that the given user granted or revoked consent
+     *
+     * @param ownerId The las2peer ID of the user whose consent changed
+     */
+    private void notifyConsentChanged(String ownerId) {
+        for (IdentityChangeListener listener : listeners) {
+            try {
+                listener.consentChanged(ownerId);
+            } catch (Exception e) {
+                log.printStackTrace(e);
+            }
+        }
+    }
+
     /**
      * Temporary helper function to read static cookies used for testing from properties file
      *
@@ -317,16 +360,18 @@ public class IdentityManager {
      * @param ownerId The las2peer ID of the user whose cookies are requested
      * @param reqUri The request URI for which the cookies are requested
      * @param anon Whether the identity of the cookies' owner is known to the requesting user
+     * @param deadline Deadline of the request checking the consent, null to wait as long as it takes
      * @return Valid YouTube cookies stored for the requested user if requesting user has required permissions as String
      */
-    private String getCookiesFromStorage(ExecutionContext context, String ownerId, String reqUri, boolean anon) {
+    private String getCookiesFromStorage(ExecutionContext context, String ownerId, String reqUri, boolean anon,
+                                         Deadline deadline) {
         try {
             String userId = L2pUtil.getUserId((UserAgent) context.getMainAgent());
             // Check whether user is allowed to access the owner's cookies
             Envelope cookieEnvelope = context.requestEnvelope(getCookieHandle(ownerId));
 
             // Make sure that user has the proper permissions to use the cookie for the specified request
-            if (ownerId.equals(userId) || checkConsent(context, new Consent(ownerId, userId, reqUri, anon))) {
+            if (ownerId.equals(userId) || checkConsent(context, new Consent(ownerId, userId, reqUri, anon), deadline)) {
                 // Decrypt cookie (sometimes stuff gets added to encrypted cookies, so use head and tail markings)
                 int head = 0, tail = 0, statusH = 0, statusT = 0, count = 0;
                 byte[] content = SerializeTools.serialize(SerializeTools.deserializeBase64(cookieEnvelope.getContent()
@@ -408,6 +453,21 @@ public class IdentityManager {
      * @return Valid YouTube cookies stored for the requested user if requesting user has required permissions
      */
     public ArrayList<Cookie> getCookies(ExecutionContext context, String ownerId, String reqUri, boolean anon) {
+        return getCookies(context, ownerId, reqUri, anon, null);
+    }
+
+    /**
+     * Retrieve cookies for the given user as Array List, checking the consent within the given deadline
+     *
+     * @param context The current execution context required to fetch the cookies accessible to the current user
+     * @param ownerId The las2peer ID of the user whose cookies are requested
+     * @param reqUri The request URI for which the cookies are requested
+     * @param anon Whether the identity of the cookies' owner is known to the requesting user
+     * @param deadline Deadline of the request, null to wait as long as it takes
+     * @return Valid YouTube cookies stored for the requested user if requesting user has required permissions
+     */
+    public ArrayList<Cookie> getCookies(ExecutionContext context, String ownerId, String reqUri, boolean anon,
+                                        Deadline deadline) {
         // If cookies were parsed from a static file, return this
         if (this.cookies != null && !this.cookies.isEmpty()) {
             log.info("Using cookies from file");
@@ -415,7 +475,7 @@ public class IdentityManager {
         }
 
         // Else retrieve cookies from las2peer storage
-        String cookieString = getCookiesFromStorage(context, ownerId, reqUri, anon);
+        String cookieString = getCookiesFromStorage(context, ownerId, reqUri, anon, deadline);
         if (cookieString == null)
             return null;
         if (cookieString.length() < 1)
@@ -433,7 +493,7 @@ public class IdentityManager {
      * @return Valid YouTube cookies stored for the requested user if requesting user has required permissions
      */
     public JsonArray getCookiesAsJson(ExecutionContext context, String ownerId, String reqUri, boolean anon) {
-        String cookieString = getCookiesFromStorage(context, ownerId, reqUri, anon);
+        String cookieString = getCookiesFromStorage(context, ownerId, reqUri, anon, null);
         if (cookieString == null)
             return null;
         if (cookieString.length() < 1)
@@ -507,6 +567,7 @@ public class IdentityManager {
             return response;
         }
         log.info("Cookies updated for user " + ownerId);
+        notifyIdentityChanged(ownerId);
         response.addProperty("status", 200);
         response.addProperty("msg", responseMsg);
         return response;
@@ -585,6 +646,7 @@ public class IdentityManager {
             log.printStackTrace(e);
         }
         log.info("Cookies removed for user " + ownerId);
+        notifyIdentityChanged(ownerId);
         response.addProperty("status", 200);
         response.addProperty("msg", "Data successfully deleted");
         return response;
@@ -600,6 +662,21 @@ public class IdentityManager {
      * @return Valid HTTP headers stored for that user
      */
     public HashMap<String, String> getHeaders(ExecutionContext context, String ownerId, String reqUri, boolean anon) {
+        return getHeaders(context, ownerId, reqUri, anon, null);
+    }
+
+    /**
+     * Retrieve HTTP headers for the given user, checking the consent within the given deadline
+     *
+     * @param context The current execution context required to fetch the cookies accessible to the current user
+     * @param ownerId The las2peer ID of the user whose cookies are requested
+     * @param reqUri The request URI for which the cookies are requested
+     * @param anon Whether the identity of the cookies' owner is known to the requesting user
+     * @param deadline Deadline of the request, null to wait as long as it takes
+     * @return Valid HTTP headers stored for that user
+     */
+    public HashMap<String, String> getHeaders(ExecutionContext context, String ownerId, String reqUri, boolean anon,
+                                              Deadline deadline) {
         // If headers were parsed from a static file, return this
         if (this.headers != null && !this.headers.isEmpty()) {
             log.info("Using headers from file");
@@ -613,7 +690,7 @@ public class IdentityManager {
             Envelope headerEnvelope = context.requestEnvelope(getHeaderHandle(ownerId));
 
             // Make sure that user has the proper permissions to use the headers for the specified request
-            if (ownerId.equals(userId) || checkConsent(context, new Consent(ownerId, userId, reqUri, anon)))
+            if (ownerId.equals(userId) || checkConsent(context, new Consent(ownerId, userId, reqUri, anon), deadline))
                 return ParserUtil.jsonToMap(ParserUtil.toJsonObject(headerEnvelope.getContent().toString()));
 
             return new HashMap<String, String>();
@@ -662,6 +739,7 @@ public class IdentityManager {
             return response;
         }
         log.info("Headers updated for user " + userId);
+        notifyIdentityChanged(userId);
         response.addProperty("status", 200);
         response.addProperty("msg", responseMsg);
         return response;
@@ -718,13 +796,25 @@ public class IdentityManager {
      * @return Status code and appropriate message as JSON object
      */
     public boolean checkConsent(ExecutionContext context, Consent consentObj) {
+        return checkConsent(context, consentObj, null);
+    }
+
+    /**
+     * Checks whether the requested consent object is currently stored on the blockchain, waiting for the blockchain at
+     * most until the given deadline
+     *
+     * @param consentObj The specific consent options
+     * @param deadline Deadline of the request, null to wait as long as it takes
+     * @return Whether consent was given, false if the blockchain did not answer in time
+     */
+    public boolean checkConsent(ExecutionContext context, Consent consentObj, Deadline deadline) {
         try {
             // Create signed consent object
             byte[] consentHash = getConsentHash(context, consentObj);
             if (consentHash == null)
                 return false;
             log.info("Checking for consent " + ParserUtil.bytesToHex(consentHash));
-            boolean result = consentRegistry.hashExists(consentHash).sendAsync().get();
+            boolean result = hashExists(consentHash, deadline);
 
             // Consent for non-anonymous requests also entails consent for anonymous ones
             if (!result && consentObj.getAnon()) {
@@ -732,7 +822,7 @@ public class IdentityManager {
                 if (consentHash == null)
                     return false;
                 log.info("Checking for consent " + ParserUtil.bytesToHex(consentHash));
-                return consentRegistry.hashExists(consentHash).sendAsync().get();
+                return hashExists(consentHash, deadline);
             }
             return result;
         } catch (Exception e) {
@@ -742,6 +832,12 @@ public class IdentityManager {
         }
     }
 
+    // Look up the given hash in the consent registry, waiting at most until the given deadline
+    private boolean hashExists(byte[] consentHash, Deadline deadline) throws Exception {
+        CompletableFuture<Boolean> result = consentRegistry.hashExists(consentHash).sendAsync();
+        return deadline == null ? result.get() : deadline.await(result);
+    }
+
     /**
      * Returns all consent objects stored by the current user
      *
@@ -837,6 +933,7 @@ public class IdentityManager {
         }
 
         log.info("Consent updated for user " + userId);
+        notifyConsentChanged(userId);
         response.addProperty("status", 200);
         response.addProperty("msg", consentObj.toString());
         return response;
@@ -906,6 +1003,7 @@ public class IdentityManager {
         }
 
         log.info("Consent revoked by user " + userId);
+        notifyConsentChanged(userId);
         response.addProperty("status", 200);
         response.addProperty("msg", consentObj.toString());
         return response;
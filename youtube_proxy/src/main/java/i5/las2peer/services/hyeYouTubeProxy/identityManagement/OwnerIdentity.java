@@ -0,0 +1,41 @@
+package i5.las2peer.services.hyeYouTubeProxy.identityManagement;
+
+import com.microsoft.playwright.options.Cookie;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * OwnerIdentity
+ *
+ * The cookies and headers of a resolved cookie owner which are used to make a request to YouTube on their behalf.
+ */
+public class OwnerIdentity {
+    private String ownerId;
+    private ArrayList<Cookie> cookies;
+    private HashMap<String, String> headers;
+    private boolean anon;
+
+    public OwnerIdentity(String ownerId, ArrayList<Cookie> cookies, HashMap<String, String> headers, boolean anon) {
+        this.ownerId = ownerId;
+        this.cookies = cookies;
+        this.headers = headers;
+        this.anon = anon;
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public ArrayList<Cookie> getCookies() {
+        return cookies;
+    }
+
+    public HashMap<String, String> getHeaders() {
+        return headers;
+    }
+
+    public boolean getAnon() {
+        return anon;
+    }
+}
@@ -0,0 +1,96 @@
+package i5.las2peer.services.hyeYouTubeProxy.lib;
+
+import java.io.Reader;
+
+/**
+ * CharSequenceReader
+ *
+ * Reads a window of a character sequence (e.g., a part of a multi-megabyte HTML page) without copying the window
+ * first. Characters are only copied into the caller's buffer as they are read, so a parser reading just the
+ * beginning of the window never touches the rest of it.
+ */
+public class CharSequenceReader extends Reader {
+
+    private final CharSequence chars;
+    private final int end;
+    private int pos;
+    private int mark;
+
+    /**
+     * Constructor
+     *
+     * @param chars The character sequence to read from
+     * @param start Index of the first character to read
+     * @param end Index after the last character to read
+     */
+    public CharSequenceReader(CharSequence chars, int start, int end) {
+        if (start < 0 || end > chars.length() || start > end)
+            throw new IndexOutOfBoundsException("Window " + start + "-" + end + " of " + chars.length() + " chars");
+        this.chars = chars;
+        this.end = end;
+        this.pos = start;
+        this.mark = start;
+    }
+
+    /**
+     * @return Index of the next character to read within the whole character sequence
+     */
+    public int getPosition() {
+        return pos;
+    }
+
+    @Override
+    public int read() {
+        return pos < end ? chars.charAt(pos++) : -1;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+        if (length == 0)
+            return 0;
+        if (pos >= end)
+            return -1;
+        int count = Math.min(length, end - pos);
+        // Strings copy in bulk, other sequences (e.g., StringBuilders) character by character
+        if (chars instanceof String) {
+            ((String) chars).getChars(pos, pos + count, buffer, offset);
+        } else {
+            for (int i = 0; i < count; ++i)
+                buffer[offset + i] = chars.charAt(pos + i);
+        }
+        pos += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, end - pos));
+        pos += count;
+        return count;
+    }
+
+    @Override
+    public boolean ready() {
+        return true;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) {
+        mark = pos;
+    }
+
+    @Override
+    public void reset() {
+        pos = mark;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
@@ -0,0 +1,134 @@
+package i5.las2peer.services.hyeYouTubeProxy.lib;
+
+import i5.las2peer.services.hyeYouTubeProxy.scraper.ScrapeException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Deadline
+ *
+ * Time budget of a single request, handed to every step processing the request. Each step waits at most for the
+ * remaining time, and work still in progress is cancelled once the deadline expires or the request is cancelled.
+ */
+public class Deadline {
+
+    // Expires the deadlines, the timers of finished requests are removed right away
+    private static final ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "hye-deadline-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        timers.setRemoveOnCancelPolicy(true);
+    }
+
+    private final long expiresAt;
+    private final CompletableFuture<Void> cancelled = new CompletableFuture<Void>();
+    private final ScheduledFuture<?> timer;
+
+    /**
+     * Constructor, starts the countdown right away
+     *
+     * @param timeoutMillis Time budget of the request
+     */
+    public Deadline(long timeoutMillis) {
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.timer = timers.schedule(this::cancel, Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS);
+        cancelled.thenRun(() -> timer.cancel(false));
+    }
+
+    /**
+     * @return Time left in milliseconds, 0 if the deadline has passed or the request was cancelled
+     */
+    public long getRemainingMillis() {
+        if (cancelled.isDone())
+            return 0;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return getRemainingMillis() <= 0;
+    }
+
+    /**
+     * Cancels all work done for the request, e.g., because the response is no longer awaited
+     */
+    public void cancel() {
+        cancelled.complete(null);
+    }
+
+    /**
+     * Stops the countdown once the request has been answered, without cancelling anything
+     */
+    public void finish() {
+        timer.cancel(false);
+    }
+
+    /**
+     * @return Future completed once the deadline expires or the request is cancelled, never completed once the
+     * request has finished
+     */
+    public CompletableFuture<Void> getCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Fails if there is no time left to continue processing the request
+     *
+     * @throws ScrapeException With status 504 if the deadline has expired
+     */
+    public void check() throws ScrapeException {
+        if (isExpired())
+            throw new ScrapeException(504, "Request timed out.");
+    }
+
+    /**
+     * Waits for the given future for at most the remaining time
+     *
+     * @param future Future of a step processing the request
+     * @param <T> Type of the result
+     * @return Result of the future
+     * @throws ExecutionException If the step failed
+     * @throws InterruptedException If the waiting thread was interrupted
+     * @throws TimeoutException If the deadline expired before the step completed, the future is cancelled then
+     */
+    public <T> T await(Future<T> future) throws ExecutionException, InterruptedException, TimeoutException {
+        try {
+            return future.get(getRemainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Fails the given future with status 504 once the deadline expires, and cancels the deadline if the future is
+     * cancelled by its consumer
+     *
+     * @param future Future of the response to the request
+     * @param <T> Type of the result
+     * @return Future of the same result, or failed with ScrapeException 504 if the deadline expires first
+     */
+    public <T> CompletableFuture<T> bind(CompletableFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<T>();
+        future.whenComplete((value, error) -> {
+            if (error != null)
+                result.completeExceptionally(error);
+            else
+                result.complete(value);
+        });
+        cancelled.thenRun(() -> result.completeExceptionally(new ScrapeException(504, "Request timed out.")));
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled())
+                cancel();
+        });
+        return result;
+    }
+}
@@ -0,0 +1,228 @@
+package i5.las2peer.services.hyeYouTubeProxy.lib;
+
+/**
+ * MetadataTokenizer
+ *
+ * Reads the video metadata YouTube displays as text (e.g., "1.2M views", "12:34", "2 days ago") straight from the
+ * given characters. Tokens are only located by their indices, so apart from the strings returned by tokens(), no
+ * intermediate strings are created.
+ */
+public abstract class MetadataTokenizer {
+
+    private static final long MINUTE = 60;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final long WEEK = 7 * DAY;
+    // Average lengths of Gregorian months and years
+    private static final long MONTH = 2629746;
+    private static final long YEAR = 31556952;
+
+    private static boolean isSpace(char c) {
+        return ParserUtil.isBlankSpace(c) || Character.isSpaceChar(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Finds the beginning of the next token, tokens are separated by white space
+     *
+     * @param text The text to search
+     * @param from Index to start searching at
+     * @return Index of the first character of the next token, or -1 if there are no further tokens
+     */
+    public static int nextToken(CharSequence text, int from) {
+        for (int i = Math.max(0, from); i < text.length(); ++i) {
+            if (!isSpace(text.charAt(i)))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of the token starting at the given index
+     *
+     * @param text The text containing the token
+     * @param start Index of the first character of the token
+     * @return Index after the last character of the token
+     */
+    public static int tokenEnd(CharSequence text, int start) {
+        int i = start;
+        while (i < text.length() && !isSpace(text.charAt(i)))
+            ++i;
+        return i;
+    }
+
+    /**
+     * Reads the given number of tokens following the given character
+     *
+     * @param text The text to read from (e.g., "Channel • 1.2M views 2 days ago")
+     * @param separator Character preceding the tokens (e.g., '•'), the tokens are read from the beginning of the text
+     * if it is 0
+     * @param skip Number of tokens to skip after the separator
+     * @param count Number of tokens to read
+     * @return The tokens including the white space between them, or null if the separator or tokens are missing
+     */
+    public static String tokens(CharSequence text, char separator, int skip, int count) {
+        int pos = 0;
+        if (separator != 0) {
+            while (pos < text.length() && text.charAt(pos) != separator)
+                ++pos;
+            if (pos == text.length())
+                return null;
+            ++pos;
+        }
+        for (int i = 0; i < skip; ++i) {
+            pos = nextToken(text, pos);
+            if (pos < 0)
+                return null;
+            pos = tokenEnd(text, pos);
+        }
+        int start = nextToken(text, pos);
+        if (start < 0)
+            return null;
+        int end = start;
+        for (int i = 0; i < count; ++i) {
+            int token = nextToken(text, end);
+            if (token < 0)
+                return null;
+            end = tokenEnd(text, token);
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    /**
+     * Reads a count such as a number of views (e.g., "1,234 views", "1.2M views", "No views")
+     *
+     * @param text The displayed count
+     * @return The count, or -1 if the text does not contain a number
+     */
+    public static long parseCount(CharSequence text) {
+        if (text == null)
+            return -1;
+        int i = 0;
+        while (i < text.length() && !isDigit(text.charAt(i)))
+            ++i;
+        if (i == text.length())
+            return text.length() > 0 && (text.charAt(0) == 'N' || text.charAt(0) == 'n') ? 0 : -1;
+
+        // Separators are ignored unless the number is abbreviated, then the last one is the decimal point
+        long value = 0;
+        int decimals = -1;
+        for (; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                value = value * 10 + (c - '0');
+                if (decimals >= 0)
+                    ++decimals;
+            } else if ((c == ',' || c == '.' || c == '\'' || isSpace(c)) && i + 1 < text.length() &&
+                    isDigit(text.charAt(i + 1))) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+        while (i < text.length() && isSpace(text.charAt(i)))
+            ++i;
+
+        long multiplier = 1;
+        if (i < text.length() && (i + 1 == text.length() || !Character.isLetter(text.charAt(i + 1)))) {
+            switch (text.charAt(i)) {
+                case 'K':
+                case 'k':
+                    multiplier = 1000;
+                    break;
+                case 'M':
+                    multiplier = 1000000;
+                    break;
+                case 'B':
+                    multiplier = 1000000000;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (multiplier == 1 || decimals <= 0)
+            return value * multiplier;
+        for (int d = 0; d < decimals; ++d)
+            multiplier /= 10;
+        return value * multiplier;
+    }
+
+    /**
+     * Reads a duration displayed as hours, minutes, and seconds separated by colons (e.g., "1:02:03", "12:34")
+     *
+     * @param text The displayed duration
+     * @return The duration in seconds, or -1 if the text is not a duration (e.g., for live streams)
+     */
+    public static long parseDuration(CharSequence text) {
+        if (text == null)
+            return -1;
+        long seconds = 0;
+        long part = -1;
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                part = (part < 0 ? 0 : part) * 10 + (c - '0');
+            } else if (c == ':' && part >= 0) {
+                seconds = (seconds + part) * 60;
+                part = -1;
+            } else if (!isSpace(c)) {
+                return -1;
+            }
+        }
+        return part < 0 ? -1 : seconds + part;
+    }
+
+    private static boolean startsWith(CharSequence text, int start, String prefix) {
+        if (start + prefix.length() > text.length())
+            return false;
+        for (int i = 0; i < prefix.length(); ++i) {
+            if (Character.toLowerCase(text.charAt(start + i)) != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the age of a video (e.g., "2 days ago", "Streamed 3 weeks ago", "1 yr ago")
+     *
+     * @param text The displayed age
+     * @return The approximate age in seconds, or -1 if the text does not contain an age
+     */
+    public static long parseAge(CharSequence text) {
+        if (text == null)
+            return -1;
+        int i = 0;
+        while (i < text.length() && !isDigit(text.charAt(i)))
+            ++i;
+        if (i == text.length())
+            return -1;
+        long amount = 0;
+        while (i < text.length() && isDigit(text.charAt(i)))
+            amount = amount * 10 + (text.charAt(i++) - '0');
+        i = nextToken(text, i);
+        if (i < 0)
+            return -1;
+
+        long unit;
+        if (startsWith(text, i, "mo"))
+            unit = MONTH;
+        else if (startsWith(text, i, "m"))
+            unit = MINUTE;
+        else if (startsWith(text, i, "s"))
+            unit = 1;
+        else if (startsWith(text, i, "h"))
+            unit = HOUR;
+        else if (startsWith(text, i, "d"))
+            unit = DAY;
+        else if (startsWith(text, i, "w"))
+            unit = WEEK;
+        else if (startsWith(text, i, "y"))
+            unit = YEAR;
+        else
+            return -1;
+        return amount * unit;
+    }
+}
@@ -0,0 +1,141 @@
+package i5.las2peer.services.hyeYouTubeProxy.lib;
+
+import com.google.gson.JsonObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Metrics
+ *
+ * Service wide registry of counters, timers and gauges which are exposed via the /metrics route
+ */
+
+public abstract class Metrics {
+
+    private static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+    private static final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+    private static final ConcurrentHashMap<String, Supplier<Number>> gauges =
+            new ConcurrentHashMap<String, Supplier<Number>>();
+
+    /**
+     * Accumulates count, total and maximum of the durations recorded under one name
+     */
+    private static class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private JsonObject toJson() {
+            JsonObject result = new JsonObject();
+            long n = count.sum();
+            long total = totalNanos.sum();
+            result.addProperty("count", n);
+            result.addProperty("totalMs", total / 1e6);
+            result.addProperty("avgMs", n > 0 ? total / 1e6 / n : 0);
+            result.addProperty("maxMs", maxNanos.get() / 1e6);
+            return result;
+        }
+    }
+
+    /**
+     * Increments the counter with the given name by one
+     *
+     * @param name Name of the counter
+     */
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Increments the counter with the given name by the given amount
+     *
+     * @param name Name of the counter
+     * @param amount Value added to the counter
+     */
+    public static void add(String name, long amount) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Retrieves the current value of the given counter
+     *
+     * @param name Name of the counter
+     * @return Current value of the counter or 0 if nothing was counted yet
+     */
+    public static long getCount(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Records a duration for the timer with the given name
+     *
+     * @param name Name of the timer
+     * @param nanos Measured duration in nanoseconds
+     */
+    public static void recordTime(String name, long nanos) {
+        timers.computeIfAbsent(name, k -> new Timer()).record(nanos);
+    }
+
+    /**
+     * Registers a value which is computed every time the metrics are requested
+     *
+     * @param name Name of the gauge
+     * @param gauge Function supplying the current value
+     */
+    public static void registerGauge(String name, Supplier<Number> gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Computes the share of the first counter in the sum of both counters (e.g., hits / (hits + misses))
+     *
+     * @param name Name of the counter in the numerator
+     * @param otherName Name of the second counter
+     * @return Ratio between 0 and 1, or 0 if neither counter was incremented yet
+     */
+    public static double ratio(String name, String otherName) {
+        long count = getCount(name);
+        long total = count + getCount(otherName);
+        return total > 0 ? (double) count / total : 0;
+    }
+
+    /**
+     * Exports all metrics
+     *
+     * @return Counters, timers, and gauges as Json object
+     */
+    public static JsonObject toJson() {
+        JsonObject result = new JsonObject();
+        JsonObject counterObj = new JsonObject();
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<String, LongAdder>(counters).entrySet())
+            counterObj.addProperty(counter.getKey(), counter.getValue().sum());
+        JsonObject timerObj = new JsonObject();
+        for (Map.Entry<String, Timer> timer : new TreeMap<String, Timer>(timers).entrySet())
+            timerObj.add(timer.getKey(), timer.getValue().toJson());
+        JsonObject gaugeObj = new JsonObject();
+        for (Map.Entry<String, Supplier<Number>> gauge : new TreeMap<String, Supplier<Number>>(gauges).entrySet()) {
+            try {
+                gaugeObj.addProperty(gauge.getKey(), gauge.getValue().get());
+            } catch (Exception e) {
+                // A failing gauge should not prevent the remaining metrics from being exported
+                gaugeObj.addProperty(gauge.getKey(), (Number) null);
+            }
+        }
+        result.add("counters", counterObj);
+        result.add("timers", timerObj);
+        result.add("gauges", gaugeObj);
+        return result;
+    }
+}
@@ -36,6 +36,62 @@ public abstract class ParserUtil {
                 Character.isLetterOrDigit(c));
     }
 
+    /**
+     * Interprets the given string as an integer (e.g., a value read from the properties file)
+     *
+     * @param value The string to interpret
+     * @param fallback The value returned if the given string is not set or not a valid integer
+     * @return The given string as integer or the fallback value
+     */
+    public static int toInt(String value, int fallback) {
+        if (value == null)
+            return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Splits the given comma separated list (e.g., a value read from the properties file)
+     *
+     * @param value The comma separated list, may be null
+     * @return The trimmed, non-empty list entries
+     */
+    public static ArrayList<String> splitList(String value) {
+        ArrayList<String> result = new ArrayList<String>();
+        if (value == null)
+            return result;
+        for (String entry : value.split(",")) {
+            entry = entry.trim();
+            if (!entry.isEmpty())
+                result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Extracts the YouTube video ID from the given video link (e.g., /watch?v=VIDEO_ID&t=42s)
+     *
+     * @param link Link to a YouTube video
+     * @return The video ID or null if the link does not refer to a video
+     */
+    public static String getVideoId(String link) {
+        if (link == null)
+            return null;
+        int start = link.indexOf("?v=");
+        if (start < 0)
+            start = link.indexOf("&v=");
+        if (start < 0)
+            return null;
+        start += 3;
+        int end = start;
+        while (end < link.length() && link.charAt(end) != '&' && link.charAt(end) != '#')
+            ++end;
+        return end > start ? link.substring(start, end) : null;
+    }
+
     /**
      * Transforms the given string into a Json element
      *
@@ -0,0 +1,31 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+/**
+ * PageType
+ *
+ * The YouTube pages from which the service obtains recommendations
+ */
+public enum PageType {
+    // YouTube main page (/)
+    MAIN,
+    // Recommendations shown next to a video (/watch)
+    WATCH,
+    // Search results (/results)
+    RESULTS;
+
+    /**
+     * Looks up the page type with the given name
+     *
+     * @param name The name of the page type (case insensitive)
+     * @return The page type or null if there is no page type with the given name
+     */
+    public static PageType fromName(String name) {
+        if (name == null)
+            return null;
+        for (PageType pageType : values()) {
+            if (pageType.name().equalsIgnoreCase(name.trim()))
+                return pageType;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,127 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+import i5.las2peer.services.hyeYouTubeProxy.lib.ParserUtil;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * ParsingChain
+ *
+ * Tries the parsing strategies configured for a page type in order, starting with the cheapest one. The result of a
+ * strategy is accepted if it holds enough recommendations and all of them have a title and link, otherwise the next
+ * strategy is tried. If no strategy produces an acceptable result, the largest result is returned.
+ */
+public class ParsingChain {
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+
+    // The DOM of the main page turned out to be too inconsistent to be parsed reliably
+    private static final String DEFAULT_MAIN_ORDER = "embedded";
+    private static final String DEFAULT_ORDER = "embedded,dom";
+
+    private final EnumMap<PageType, List<ParsingStrategy>> orders;
+    private final int minResults;
+
+    /**
+     * Constructor
+     *
+     * @param orders Comma separated names of the strategies tried for each page type, the defaults are used for
+     * missing or empty entries
+     * @param minResults Minimum number of recommendations for a result to be accepted
+     */
+    public ParsingChain(EnumMap<PageType, String> orders, int minResults) {
+        this.orders = new EnumMap<PageType, List<ParsingStrategy>>(PageType.class);
+        for (PageType pageType : PageType.values()) {
+            List<ParsingStrategy> order = toStrategies(orders.get(pageType));
+            if (order.isEmpty())
+                order = toStrategies(pageType == PageType.MAIN ? DEFAULT_MAIN_ORDER : DEFAULT_ORDER);
+            this.orders.put(pageType, order);
+        }
+        this.minResults = Math.max(1, minResults);
+        for (ParsingStrategy strategy : ParsingStrategy.values()) {
+            String name = "parser." + strategy.getKey();
+            Metrics.registerGauge(name + ".successRate", () -> Metrics.ratio(name + ".accepted",
+                    name + ".rejected"));
+        }
+    }
+
+    /**
+     * Constructor using the default order of strategies for each page type
+     */
+    public ParsingChain() {
+        this(new EnumMap<PageType, String>(PageType.class), 1);
+    }
+
+    private static List<ParsingStrategy> toStrategies(String order) {
+        List<ParsingStrategy> strategies = new ArrayList<ParsingStrategy>();
+        for (String name : ParserUtil.splitList(order)) {
+            ParsingStrategy strategy = ParsingStrategy.fromName(name);
+            if (strategy == null)
+                log.warning("Unknown parsing strategy " + name);
+            else if (!strategies.contains(strategy))
+                strategies.add(strategy);
+        }
+        return strategies;
+    }
+
+    /**
+     * @param pageType The type of YouTube page
+     * @return The strategies tried for the given page type, in order
+     */
+    public List<ParsingStrategy> getOrder(PageType pageType) {
+        return orders.get(pageType);
+    }
+
+    /**
+     * Checks whether the given result of a strategy can be trusted, so no further strategies need to be tried
+     *
+     * @param recs Recommendations found by a strategy
+     * @return Whether there are enough recommendations and all of them have the required fields
+     */
+    private boolean isConfident(ArrayList<Recommendation> recs) {
+        if (recs.size() < minResults)
+            return false;
+        for (Recommendation rec : recs) {
+            if (rec.getTitle() == null || rec.getTitle().isEmpty() || rec.getLink() == null ||
+                    rec.getLink().isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Extracts the recommendations from the given HTML, escalating to more expensive strategies as needed
+     *
+     * @param pageType The type of YouTube page the HTML was obtained from
+     * @param html the HTML of the YouTube page
+     * @return Personalized YouTube recommendations
+     */
+    public ArrayList<Recommendation> parse(PageType pageType, String html) {
+        ArrayList<Recommendation> best = new ArrayList<Recommendation>();
+        for (ParsingStrategy strategy : orders.get(pageType)) {
+            String name = "parser." + strategy.getKey();
+            long start = System.nanoTime();
+            ArrayList<Recommendation> recs;
+            try {
+                recs = strategy.parse(pageType, html);
+            } catch (Exception e) {
+                log.printStackTrace(e);
+                recs = new ArrayList<Recommendation>();
+            }
+            Metrics.recordTime(name, System.nanoTime() - start);
+            if (isConfident(recs)) {
+                Metrics.increment(name + ".accepted");
+                return recs;
+            }
+            Metrics.increment(name + ".rejected");
+            if (recs.size() > best.size())
+                best = recs;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,57 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+import java.util.ArrayList;
+
+/**
+ * ParsingStrategy
+ *
+ * The ways of extracting recommendations from the HTML of a YouTube page, ordered from cheapest to most expensive
+ */
+public enum ParsingStrategy {
+    // Streams the ytInitialData object embedded in the page's scripts, without building a DOM or Json tree
+    EMBEDDED {
+        @Override
+        ArrayList<Recommendation> parse(PageType pageType, String html) {
+            return YouTubeParser.parseEmbeddedData(pageType, html);
+        }
+    },
+    // Reads the rendered video elements, which requires building the DOM of the whole page using Jsoup
+    DOM {
+        @Override
+        ArrayList<Recommendation> parse(PageType pageType, String html) {
+            return YouTubeParser.parseDom(pageType, html);
+        }
+    };
+
+    /**
+     * Extracts the recommendations from the given HTML
+     *
+     * @param pageType The type of YouTube page the HTML was obtained from
+     * @param html the HTML of the YouTube page
+     * @return Personalized YouTube recommendations, empty if none could be found
+     */
+    abstract ArrayList<Recommendation> parse(PageType pageType, String html);
+
+    /**
+     * @return Name used for the strategy in the properties file and metrics
+     */
+    public String getKey() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * Looks up the strategy with the given name
+     *
+     * @param name The name of the strategy (case insensitive)
+     * @return The strategy or null if there is no strategy with the given name
+     */
+    public static ParsingStrategy fromName(String name) {
+        if (name == null)
+            return null;
+        for (ParsingStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(name.trim()))
+                return strategy;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,306 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+
+/**
+ * ProjectionParser
+ *
+ * Reads the recommendations straight from a stream of YouTube's Json data without building a Json tree. The few paths
+ * of leaf values needed per video are compiled once into a tree of keys; while streaming through the data, only the
+ * values along these paths are read and everything else (which is most of the data) is skipped.
+ */
+public abstract class ProjectionParser {
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+
+    // Path segment selecting the first element of an array
+    private static final String FIRST = RendererType.FIRST;
+
+    /**
+     * Compiled paths of the values read from one type of renderer object. Each leaf holds the index of the value
+     * within the constructor arguments of a Recommendation.
+     */
+    private static class Projection {
+        private final HashMap<String, Projection> children = new HashMap<String, Projection>();
+        private int field = -1;
+
+        /**
+         * Compiles the paths of the given renderer type into a tree of keys
+         *
+         * @param type The renderer type
+         * @return The compiled projection
+         */
+        private static Projection compile(RendererType type) {
+            Projection root = new Projection();
+            for (int i = 0; i < RendererType.FIELDS; ++i) {
+                if (type.getPath(i) == null)
+                    continue;
+                Projection node = root;
+                for (String segment : type.getPath(i))
+                    node = node.children.computeIfAbsent(segment, key -> new Projection());
+                node.field = i;
+            }
+            return root;
+        }
+    }
+
+    private static final EnumMap<RendererType, Projection> projections =
+            new EnumMap<RendererType, Projection>(RendererType.class);
+
+    static {
+        for (RendererType type : RendererType.values())
+            projections.put(type, Projection.compile(type));
+    }
+
+    // Paths from each page's renderer object to the list of items
+    private static final String[] MAIN_ITEMS = split("tabs[0].tabRenderer.content.richGridRenderer.contents");
+    private static final String[] WATCH_ITEMS = split("secondaryResults.secondaryResults.results");
+    private static final String[] RESULTS_ITEMS = split("primaryContents.sectionListRenderer.contents");
+
+    private static String[] split(String path) {
+        return RendererType.split(path);
+    }
+
+    /**
+     * Moves the reader to the value at the given path
+     *
+     * @param reader Reader positioned at the value the path starts from
+     * @param path Keys and FIRST segments leading to the value
+     * @return Whether the value exists, the reader is positioned at it in that case
+     * @throws IOException If the data could not be read
+     */
+    private static boolean seek(JsonReader reader, String[] path) throws IOException {
+        for (String segment : path) {
+            if (segment.equals(FIRST)) {
+                if (reader.peek() != JsonToken.BEGIN_ARRAY)
+                    return false;
+                reader.beginArray();
+                if (!reader.hasNext())
+                    return false;
+                continue;
+            }
+            if (reader.peek() != JsonToken.BEGIN_OBJECT)
+                return false;
+            reader.beginObject();
+            boolean found = false;
+            while (!found && reader.hasNext()) {
+                if (reader.nextName().equals(segment))
+                    found = true;
+                else
+                    reader.skipValue();
+            }
+            if (!found)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the values of the given projection from the value the reader is positioned at, skipping everything else
+     *
+     * @param reader Reader positioned at a value
+     * @param node Part of the projection matching the value
+     * @param values Values read so far, indexed by field
+     * @throws IOException If the data could not be read
+     */
+    private static void project(JsonReader reader, Projection node, String[] values) throws IOException {
+        JsonToken token = reader.peek();
+        if (node.field >= 0 && (token == JsonToken.STRING || token == JsonToken.NUMBER)) {
+            values[node.field] = reader.nextString();
+            return;
+        }
+        if (token == JsonToken.BEGIN_OBJECT && !node.children.isEmpty()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                Projection child = node.children.get(reader.nextName());
+                if (child == null)
+                    reader.skipValue();
+                else
+                    project(reader, child, values);
+            }
+            reader.endObject();
+        } else if (token == JsonToken.BEGIN_ARRAY && node.children.containsKey(FIRST)) {
+            reader.beginArray();
+            if (reader.hasNext())
+                project(reader, node.children.get(FIRST), values);
+            while (reader.hasNext())
+                reader.skipValue();
+            reader.endArray();
+        } else {
+            reader.skipValue();
+        }
+    }
+
+    /**
+     * Reads a single renderer object of the given type
+     *
+     * @param reader Reader positioned at the renderer object
+     * @param type The type of the renderer object
+     * @return The recommendation, or null if one of its required values is missing
+     * @throws IOException If the data could not be read
+     */
+    private static Recommendation read(JsonReader reader, RendererType type) throws IOException {
+        String[] values = new String[RendererType.FIELDS];
+        project(reader, projections.get(type), values);
+        return type.toRecommendation(values);
+    }
+
+    /**
+     * Reads the renderer object of an item, identified by its key, or skips it if it is not a recommendation
+     *
+     * @param reader Reader positioned at the renderer object
+     * @param key Key of the renderer object within the item
+     * @param recs List the recommendation is added to
+     * @throws IOException If the data could not be read
+     */
+    private static void readRenderer(JsonReader reader, String key, ArrayList<Recommendation> recs)
+            throws IOException {
+        if (key.equals("itemSectionRenderer")) {
+            readSection(reader, recs);
+            return;
+        }
+        if (key.equals("richItemRenderer")) {
+            readRichItem(reader, recs);
+            return;
+        }
+        RendererType type = RendererType.fromKey(key);
+        if (type == null || reader.peek() != JsonToken.BEGIN_OBJECT) {
+            // E.g., continuation items, ads, and chip clouds, which are not recommendations
+            RendererType.skipped(key);
+            reader.skipValue();
+            return;
+        }
+        Recommendation rec = read(reader, type);
+        if (rec != null)
+            recs.add(rec);
+    }
+
+    /**
+     * Reads the renderer object wrapped in the rich item the reader is positioned at, which is usually a video
+     *
+     * @param reader Reader positioned at a richItemRenderer object
+     * @param recs List the recommendation is added to
+     * @throws IOException If the data could not be read
+     */
+    private static void readRichItem(JsonReader reader, ArrayList<Recommendation> recs) throws IOException {
+        boolean found = false;
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("content") || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                found = true;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (key.equals("videoRenderer") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        Recommendation rec = read(reader, RendererType.RICH_VIDEO);
+                        if (rec != null)
+                            recs.add(rec);
+                    } else {
+                        readRenderer(reader, key, recs);
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        } else {
+            reader.skipValue();
+        }
+        if (!found)
+            RendererType.skipped("richItemRenderer");
+    }
+
+    /**
+     * Reads the recommendations of the list of items the reader is positioned at
+     *
+     * @param reader Reader positioned at an array of items
+     * @param recs List the recommendations are added to
+     * @throws IOException If the data could not be read
+     */
+    private static void readItems(JsonReader reader, ArrayList<Recommendation> recs) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext())
+                readRenderer(reader, reader.nextName(), recs);
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads the recommendations of the item section the reader is positioned at, search results and some watch pages
+     * wrap their items in sections
+     *
+     * @param reader Reader positioned at an itemSectionRenderer object
+     * @param recs List the recommendations are added to
+     * @throws IOException If the data could not be read
+     */
+    private static void readSection(JsonReader reader, ArrayList<Recommendation> recs) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("contents"))
+                readItems(reader, recs);
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads the recommendations from the renderer object of the given page
+     *
+     * @param pageType The type of YouTube page the renderer object was obtained from
+     * @param reader Reader positioned at the object stored under the page type's renderer key in
+     * ytInitialData.contents, only read as far as needed
+     * @return Personalized YouTube recommendations, empty if they could not be found
+     */
+    public static ArrayList<Recommendation> parse(PageType pageType, JsonReader reader) {
+        ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
+        String[] path;
+        switch (pageType) {
+            case WATCH:
+                path = WATCH_ITEMS;
+                break;
+            case RESULTS:
+                path = RESULTS_ITEMS;
+                break;
+            default:
+                path = MAIN_ITEMS;
+        }
+        try {
+            if (!seek(reader, path)) {
+                log.warning("Unable to find recommendations in " + YouTubeParser.getRendererKey(pageType));
+                return recs;
+            }
+            readItems(reader, recs);
+        } catch (Exception e) {
+            log.printStackTrace(e);
+        }
+        return recs;
+    }
+}
@@ -1,5 +1,7 @@
 package i5.las2peer.services.hyeYouTubeProxy.parser;
 
+import i5.las2peer.services.hyeYouTubeProxy.lib.MetadataTokenizer;
+
 /**
  * Recommendation
  *
@@ -27,6 +29,12 @@ public class Recommendation {
     private String uploaded;
     // Video description text
     private String description;
+    // Video length in seconds, null if unknown (e.g., for live streams)
+    private Long durationSeconds;
+    // Number of views, null if unknown
+    private Long viewCount;
+    // Approximate upload date as seconds since the epoch (derived from the age displayed when parsing), null if unknown
+    private Long uploadedEpoch;
 
     // Constructor with necessary information
     public Recommendation(String title, String channelName, String link, String channelLink) {
@@ -51,7 +59,7 @@ public class Recommendation {
         this.channelLink = channelLink;
         this.thumbnail = thumbnail;
         this.avatar = avatar;
-        this.length = length;
+        setLength(length);
         this.views = "";
         this.uploaded = "";
         this.description = "";
@@ -66,9 +74,9 @@ public class Recommendation {
         this.channelLink = channelLink;
         this.thumbnail = thumbnail;
         this.avatar = avatar;
-        this.length = length;
-        this.views = views;
-        this.uploaded = uploaded;
+        setLength(length);
+        setViews(views);
+        setUploaded(uploaded);
         this.description = description;
     }
 
@@ -126,6 +134,12 @@ public class Recommendation {
 
     public void setLength(String length) {
         this.length = length;
+        long seconds = MetadataTokenizer.parseDuration(length);
+        this.durationSeconds = seconds < 0 ? null : seconds;
+    }
+
+    public Long getDurationSeconds() {
+        return durationSeconds;
     }
 
     public String getViews() {
@@ -134,6 +148,12 @@ public class Recommendation {
 
     public void setViews(String views) {
         this.views = views;
+        long count = MetadataTokenizer.parseCount(views);
+        this.viewCount = count < 0 ? null : count;
+    }
+
+    public Long getViewCount() {
+        return viewCount;
     }
 
     public String getUploaded() {
@@ -142,6 +162,12 @@ public class Recommendation {
 
     public void setUploaded(String uploaded) {
         this.uploaded = uploaded;
+        long age = MetadataTokenizer.parseAge(uploaded);
+        this.uploadedEpoch = age < 0 ? null : System.currentTimeMillis() / 1000 - age;
+    }
+
+    public Long getUploadedEpoch() {
+        return uploadedEpoch;
     }
 
     public String getDescription() {
@@ -1,12 +1,16 @@
 package i5.las2peer.services.hyeYouTubeProxy.parser;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.lib.MetadataTokenizer;
 import i5.las2peer.services.hyeYouTubeProxy.lib.ParserUtil;
-import org.jsoup.select.Elements;
+import org.jsoup.nodes.Element;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * RecommendationBuilder.
@@ -28,21 +32,10 @@ public abstract class RecommendationBuilder {
      * @return Number of video views as string (e.g., 812, 10k, 1M)
      */
     private static String getViews(String metaBlock) {
-        String[] parts = metaBlock.split("•");
-        if (parts.length < 2) {
-            log.severe("Meta block missing '•'-character");
-            return null;
-        }
-        parts = parts[1].split(" ");
-        String views;
-
-        if (parts[0].equals(" ")) {
-            views = parts[1] + " " + parts[2];
-        }
-        else {
-            views = parts[0] + " " + parts[1];
-        }
-
+        // E.g., "Channel • 1.2M views 2 days ago", the first two words after the separator
+        String views = MetadataTokenizer.tokens(metaBlock, '•', 0, 2);
+        if (views == null)
+            log.severe("Meta block missing '•'-character or views");
         return views;
     }
 
@@ -53,119 +46,67 @@ public abstract class RecommendationBuilder {
      * @return Upload date of video as string (e.g., 2 days/5 minutes/10 years ago)
      */
     private static String getUploaded(String metaBlock) {
-        String[] parts = metaBlock.split("•");
-        if (parts.length < 2) {
-            log.severe("Meta block missing '•'-character");
-            return null;
-        }
-        parts = parts[1].split(" ");
-        String uploaded;
+        String uploaded = MetadataTokenizer.tokens(metaBlock, '•', 2, 3);
+        if (uploaded == null)
+            log.severe("Meta block missing '•'-character or upload date");
+        return uploaded;
+    }
 
-        if (parts[0].equals(" ")) {
-            uploaded = parts[3] + " " + parts[4] + " " + parts[5];
-        }
-        else {
-            uploaded = parts[2] + " " + parts[3] + " " + parts[4];
+    /**
+     * Helper function finding the next alphanumeric character
+     *
+     * @param text The text to search
+     * @param from Index to start searching at
+     * @return Index of the character, or -1 if there is none
+     */
+    private static int nextAlphaNumeric(String text, int from) {
+        for (int i = Math.max(0, from); i < text.length(); ++i) {
+            if (ParserUtil.isAlphaNumeric(text.charAt(i)))
+                return i;
         }
-
-        return uploaded;
+        return -1;
     }
 
     /**
      * Helper function extracting video relevant data from messy text
      *
+     * The lines are located by their indices and only copied once, without building them character by character.
+     *
      * @param rawDescription Text block displayed under YouTube video recommendation containing video information
      * @return HashMap pf video title, channel, view count, and upload date
      */
-    private static HashMap getVideoDetails(String rawDescription) {
+    private static HashMap<String, String> getVideoDetails(String rawDescription) {
         HashMap<String, String> result = new HashMap<String, String>();
 
-        short phase = 0;
-        String buffer = "";
-        for (int i = 0; i < rawDescription.length(); ++i) {
-            switch (phase) {
-                case 0:
-                    if (!ParserUtil.isBlankSpace(rawDescription.charAt(i)))
-                    {
-                        buffer += rawDescription.charAt(i);
-                        ++phase;
-                    }
-                    continue;
-                case 1:
-                    if (rawDescription.charAt(i) == '\n') {
-                        result.put("title", buffer);
-                        buffer = "";
-                        ++phase;
-                    }
-                    else
-                        buffer += rawDescription.charAt(i);
-                    continue;
-                case 2:
-                    if (!ParserUtil.isBlankSpace(rawDescription.charAt(i)))
-                    {
-                        buffer += rawDescription.charAt(i);
-                        ++phase;
-                    }
-                    continue;
-                case 3:
-                    if (rawDescription.charAt(i) == '\n') {
-                        result.put("channel", buffer);
-                        buffer = "";
-                        ++phase;
-                    }
-                    else
-                        buffer += rawDescription.charAt(i);
-                    continue;
-                case 4:
-                    if (rawDescription.charAt(i) == '•')
-                        ++phase;
-                    continue;
-                case 5:
-                    if (ParserUtil.isAlphaNumeric(rawDescription.charAt(i)))
-                    {
-                        buffer += rawDescription.charAt(i);
-                        ++phase;
-                    }
-                    continue;
-                case 6:
-                    if (rawDescription.charAt(i) == '\n') {
-                        result.put("views", buffer);
-                        buffer = "";
-                        ++phase;
-                    }
-                    else
-                        buffer += rawDescription.charAt(i);
-                    continue;
-                case 7:
-                    if (ParserUtil.isAlphaNumeric(rawDescription.charAt(i)))
-                    {
-                        buffer += rawDescription.charAt(i);
-                        ++phase;
-                    }
-                    continue;
-                case 8:
-                    if (rawDescription.charAt(i) == '\n')
-                    {
-                        // remove trailing spaces
-                        for (int j = buffer.length()-1; j > 0; --j)
-                        {
-                            if (ParserUtil.isAlphaNumeric(rawDescription.charAt(j)))
-                            {
-                                buffer = buffer.substring(0, j+1);
-                                ++phase;
-                                result.put("uploaded", buffer);
-                                buffer = "";
-                                break;
-                            }
-                        }
-                    }
-                    else
-                        buffer += rawDescription.charAt(i);
-                    break;
-                default:
-                    break;
-            }
-        }
+        // Title and channel are the first two lines, ignoring leading white space
+        int start = MetadataTokenizer.nextToken(rawDescription, 0);
+        int end = start < 0 ? -1 : rawDescription.indexOf('\n', start);
+        if (end < 0)
+            return result;
+        result.put("title", rawDescription.substring(start, end));
+        start = MetadataTokenizer.nextToken(rawDescription, end);
+        end = start < 0 ? -1 : rawDescription.indexOf('\n', start);
+        if (end < 0)
+            return result;
+        result.put("channel", rawDescription.substring(start, end));
+
+        // Views and upload date are the lines following the separator
+        int separator = rawDescription.indexOf('•', end);
+        start = separator < 0 ? -1 : nextAlphaNumeric(rawDescription, separator);
+        if (start < 0)
+            return result;
+        end = rawDescription.indexOf('\n', start);
+        if (end < 0)
+            return result;
+        result.put("views", rawDescription.substring(start, end));
+        start = nextAlphaNumeric(rawDescription, end);
+        end = start < 0 ? -1 : rawDescription.indexOf('\n', start);
+        if (end < 0)
+            return result;
+        // remove trailing spaces
+        while (end > start && !ParserUtil.isAlphaNumeric(rawDescription.charAt(end - 1)))
+            --end;
+        result.put("uploaded", rawDescription.substring(start, end));
 
         return result;
     }
@@ -178,7 +119,7 @@ public abstract class RecommendationBuilder {
      * @param metaBlock Specific HTML div element related to given video containing upload date and view information
      * @return YouTube Recommendation object with relevant video data
      */
-    public static Recommendation build(Elements imgs, Elements links, Elements metaBlock) {
+    public static Recommendation build(List<Element> imgs, List<Element> links, List<Element> metaBlock) {
         Recommendation rec;
         if (metaBlock.size() < 1) {
             log.info("Not enough meta elements to build Recommendation (" + metaBlock.size() + "/1)");
@@ -219,7 +160,7 @@ public abstract class RecommendationBuilder {
      * @param imgs HTML image elements (img) related to the given video
      * @return YouTube Recommendation object with relevant video data
      */
-    public static Recommendation build(Elements imgs, Elements links) {
+    public static Recommendation build(List<Element> imgs, List<Element> links) {
         Recommendation rec;
         if (imgs.size() < 2) {
             log.info("Not enough image elements to build Recommendation (" + imgs.size() + "/2)");
@@ -230,7 +171,7 @@ public abstract class RecommendationBuilder {
             return null;
         }
         try {
-            HashMap videoDetails = getVideoDetails(links.get(1).text());
+            HashMap<String, String> videoDetails = getVideoDetails(links.get(1).text());
             if (!videoDetails.containsKey("title") || !videoDetails.containsKey("channel") ||
                     !videoDetails.containsKey("views") || !videoDetails.containsKey("uploaded")) {
                 log.info("Missing information to build recommendation");
@@ -258,107 +199,92 @@ public abstract class RecommendationBuilder {
     }
 
     /**
-     * Helper method getting recommendation data from JavaScript code sent in response to requesting YouTube page
+     * Helper function reading the element at the given path without throwing exceptions for missing values
      *
-     * @param obj Json Object sent along with HTML response to YouTube containing all the relevant video data
-     * @return YouTube Recommendation object with relevant video data
+     * @param element Element the path starts from
+     * @param path Keys and FIRST segments leading to the element
+     * @return The element, or null if it is missing
      */
-    public static Recommendation build(JsonObject obj) {
-        Recommendation rec = null;
+    static JsonElement get(JsonElement element, String[] path) {
+        for (String segment : path) {
+            if (segment.equals(RendererType.FIRST)) {
+                if (!element.isJsonArray() || element.getAsJsonArray().size() == 0)
+                    return null;
+                element = element.getAsJsonArray().get(0);
+            } else {
+                if (!element.isJsonObject())
+                    return null;
+                element = element.getAsJsonObject().get(segment);
+                if (element == null)
+                    return null;
+            }
+        }
+        return element;
+    }
 
-        // There are three different types of recommendation objects
-        if (obj.has("richItemRenderer")) {
-            try {
-                // Actually interesting data is buried a little deeper
-                obj = obj.get("richItemRenderer").getAsJsonObject().get("content").getAsJsonObject()
-                    .get("videoRenderer").getAsJsonObject();
+    /**
+     * Helper function reading the value at the given path without throwing exceptions for missing values
+     *
+     * @param element Element the path starts from
+     * @param path Keys and FIRST segments leading to the value
+     * @return The value as string, or null if it is missing
+     */
+    private static String getString(JsonElement element, String[] path) {
+        element = get(element, path);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
 
-                // Try to create object
-                rec = new Recommendation(
-                        obj.get("title").getAsJsonObject().get("runs").getAsJsonArray().get(0).getAsJsonObject()
-                                .get("text").getAsString(),
-                        obj.get("ownerText").getAsJsonObject().get("runs").getAsJsonArray().get(0).getAsJsonObject()
-                                .get("text").getAsString(),
-                        obj.get("navigationEndpoint").getAsJsonObject().get("commandMetadata").getAsJsonObject()
-                                .get("webCommandMetadata").getAsJsonObject().get("url").getAsString(),
-                        obj.get("ownerText").getAsJsonObject().get("runs").getAsJsonArray().get(0).getAsJsonObject()
-                                .get("navigationEndpoint").getAsJsonObject().get("browseEndpoint").getAsJsonObject()
-                                .get("canonicalBaseUrl").getAsString(),
-                        obj.get("thumbnail").getAsJsonObject().get("thumbnails").getAsJsonArray().get(0)
-                                .getAsJsonObject().get("url").getAsString(),
-                        obj.get("channelThumbnailSupportedRenderers").getAsJsonObject()
-                                .get("channelThumbnailWithLinkRenderer").getAsJsonObject().get("thumbnail")
-                                .getAsJsonObject().get("thumbnails").getAsJsonArray().get(0).getAsJsonObject()
-                                .get("url").getAsString(),
-                        obj.get("lengthText").getAsJsonObject().get("simpleText").getAsString(),
-                        obj.get("viewCountText").getAsJsonObject().get("simpleText").getAsString(),
-                        obj.get("publishedTimeText").getAsJsonObject().get("simpleText").getAsString(),
-                        obj.get("descriptionSnippet").getAsJsonObject().get("runs").getAsJsonArray().get(0)
-                                .getAsJsonObject().get("text").getAsString()
-                );
-            } catch (Exception e) {
-                log.printStackTrace(e);
-            }
+    /**
+     * Helper function reading the values of the given renderer type
+     *
+     * @param type The type of the renderer object
+     * @param renderer The renderer object
+     * @return YouTube Recommendation object, or null if a required value is missing
+     */
+    private static Recommendation build(RendererType type, JsonObject renderer) {
+        String[] values = new String[RendererType.FIELDS];
+        for (int i = 0; i < RendererType.FIELDS; ++i) {
+            String[] path = type.getPath(i);
+            if (path != null)
+                values[i] = getString(renderer, path);
         }
-        else if (obj.has("compactVideoRenderer")) {
-            try {
-                obj = obj.get("compactVideoRenderer").getAsJsonObject();
+        return type.toRecommendation(values);
+    }
 
-                // Try to create object
-                rec = new Recommendation(
-                        obj.get("title").getAsJsonObject().get("simpleText").getAsString(),
-                        obj.get("shortBylineText").getAsJsonObject().get("runs").getAsJsonArray().get(0)
-                                .getAsJsonObject().get("text").getAsString(),
-                        obj.get("navigationEndpoint").getAsJsonObject().get("commandMetadata").getAsJsonObject()
-                                .get("webCommandMetadata").getAsJsonObject().get("url").getAsString(),
-                        obj.get("shortBylineText").getAsJsonObject().get("runs").getAsJsonArray().get(0)
-                                .getAsJsonObject().get("navigationEndpoint").getAsJsonObject().get("browseEndpoint")
-                                .getAsJsonObject().get("canonicalBaseUrl").getAsString(),
-                        obj.get("thumbnail").getAsJsonObject().get("thumbnails").getAsJsonArray().get(0)
-                                .getAsJsonObject().get("url").getAsString(),
-                        obj.get("channelThumbnail").getAsJsonObject().get("thumbnails").getAsJsonArray().get(0)
-                                .getAsJsonObject().get("url").getAsString(),
-                        obj.get("lengthText").getAsJsonObject().get("simpleText").getAsString(),
-                        obj.get("viewCountText").getAsJsonObject().get("simpleText").getAsString(),
-                        obj.get("publishedTimeText").getAsJsonObject().get("simpleText").getAsString(),
-                        ""
-                );
-            } catch (Exception e) {
-                log.printStackTrace(e);
+    /**
+     * Helper method getting recommendation data from JavaScript code sent in response to requesting YouTube page
+     *
+     * The renderer object of the item is looked up by its key, items which are not recommendations (e.g., ads,
+     * shelves, or chips) are skipped without trying to read them.
+     *
+     * @param obj Json Object sent along with HTML response to YouTube containing all the relevant video data
+     * @return YouTube Recommendation object with relevant video data, or null if the item is not a recommendation or
+     * values are missing
+     */
+    public static Recommendation build(JsonObject obj) {
+        for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
+            if (!entry.getValue().isJsonObject())
+                continue;
+            JsonObject renderer = entry.getValue().getAsJsonObject();
+            // Rich items wrap the actual renderer object, which is usually a video
+            if (entry.getKey().equals("richItemRenderer")) {
+                JsonElement content = renderer.get("content");
+                if (content == null || !content.isJsonObject()) {
+                    RendererType.skipped(entry.getKey());
+                    return null;
+                }
+                if (content.getAsJsonObject().has("videoRenderer") &&
+                        content.getAsJsonObject().get("videoRenderer").isJsonObject())
+                    return build(RendererType.RICH_VIDEO, content.getAsJsonObject().getAsJsonObject("videoRenderer"));
+                return build(content.getAsJsonObject());
             }
-        }
-        else if (obj.has("videoRenderer")) {
-            try {
-                obj = obj.get("videoRenderer").getAsJsonObject();
-                // Try to create object
-                rec = new Recommendation(
-                        obj.get("title").getAsJsonObject().get("runs").getAsJsonArray().get(0).getAsJsonObject()
-                                .get("text").getAsString(),
-                        obj.get("ownerText").getAsJsonObject().get("runs").getAsJsonArray().get(0).getAsJsonObject()
-                                .get("text").getAsString(),
-                        obj.get("navigationEndpoint").getAsJsonObject().get("commandMetadata").getAsJsonObject()
-                                .get("webCommandMetadata").getAsJsonObject().get("url").getAsString(),
-                        obj.get("ownerText").getAsJsonObject().get("runs").getAsJsonArray().get(0).getAsJsonObject()
-                                .get("navigationEndpoint").getAsJsonObject().get("browseEndpoint").getAsJsonObject()
-                                .get("canonicalBaseUrl").getAsString(),
-                        obj.get("thumbnail").getAsJsonObject().get("thumbnails").getAsJsonArray().get(0).
-                                getAsJsonObject().get("url").getAsString(),
-                        obj.get("channelThumbnailSupportedRenderers").getAsJsonObject()
-                                .get("channelThumbnailWithLinkRenderer").getAsJsonObject().get("thumbnail")
-                                .getAsJsonObject().get("thumbnails").getAsJsonArray().get(0).getAsJsonObject()
-                                .get("url").getAsString(),
-                        obj.get("lengthText").getAsJsonObject().get("simpleText").getAsString(),
-                        obj.get("viewCountText").getAsJsonObject().get("simpleText").getAsString(),
-                        obj.get("publishedTimeText").getAsJsonObject().get("simpleText").getAsString(),
-                        obj.get("detailedMetadataSnippets").getAsJsonArray().get(0).getAsJsonObject().get("snippetText")
-                                .getAsJsonObject().get("runs").getAsJsonArray().get(0).getAsJsonObject().get("text")
-                                .getAsString()
-                );
-            } catch (Exception e) {
-                log.printStackTrace(e);
+            RendererType type = RendererType.fromKey(entry.getKey());
+            if (type == null) {
+                RendererType.skipped(entry.getKey());
+                return null;
             }
+            return build(type, renderer);
         }
-
-        return rec;
+        return null;
     }
 }
@@ -0,0 +1,185 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.util.HashMap;
+
+/**
+ * RendererType
+ *
+ * The renderer objects YouTube lists videos (and other recommended items) in, along with the paths of the values read
+ * from them. The paths are given in the order of the arguments of the Recommendation constructor, e.g.,
+ * "title.runs[0].text". Paths starting with "?" are optional and null paths are not part of the renderer type, the
+ * values of both are set to an empty string if missing. Items lacking a required value are skipped.
+ */
+public enum RendererType {
+    VIDEO("videoRenderer",
+            "title.runs[0].text",
+            "ownerText.runs[0].text",
+            "navigationEndpoint.commandMetadata.webCommandMetadata.url",
+            "ownerText.runs[0].navigationEndpoint.browseEndpoint.canonicalBaseUrl",
+            "thumbnail.thumbnails[0].url",
+            "channelThumbnailSupportedRenderers.channelThumbnailWithLinkRenderer.thumbnail.thumbnails[0].url",
+            // Live streams have no length
+            "?lengthText.simpleText",
+            "viewCountText.simpleText",
+            "publishedTimeText.simpleText",
+            "?detailedMetadataSnippets[0].snippetText.runs[0].text"),
+    // Video renderer nested in the richItemRenderer of the main page, which shows a different description
+    RICH_VIDEO("richItemRenderer",
+            "title.runs[0].text",
+            "ownerText.runs[0].text",
+            "navigationEndpoint.commandMetadata.webCommandMetadata.url",
+            "ownerText.runs[0].navigationEndpoint.browseEndpoint.canonicalBaseUrl",
+            "thumbnail.thumbnails[0].url",
+            "channelThumbnailSupportedRenderers.channelThumbnailWithLinkRenderer.thumbnail.thumbnails[0].url",
+            "?lengthText.simpleText",
+            "viewCountText.simpleText",
+            "publishedTimeText.simpleText",
+            "?descriptionSnippet.runs[0].text"),
+    COMPACT_VIDEO("compactVideoRenderer",
+            "title.simpleText",
+            "shortBylineText.runs[0].text",
+            "navigationEndpoint.commandMetadata.webCommandMetadata.url",
+            "shortBylineText.runs[0].navigationEndpoint.browseEndpoint.canonicalBaseUrl",
+            "thumbnail.thumbnails[0].url",
+            "channelThumbnail.thumbnails[0].url",
+            "?lengthText.simpleText",
+            "viewCountText.simpleText",
+            "publishedTimeText.simpleText",
+            null),
+    // Shorts, which do not show their channel
+    REEL_ITEM("reelItemRenderer",
+            "headline.simpleText",
+            null,
+            "navigationEndpoint.commandMetadata.webCommandMetadata.url",
+            null,
+            "thumbnail.thumbnails[0].url",
+            null,
+            null,
+            "?viewCountText.simpleText",
+            null,
+            null),
+    PLAYLIST("playlistRenderer",
+            "title.simpleText",
+            "?shortBylineText.runs[0].text",
+            "navigationEndpoint.commandMetadata.webCommandMetadata.url",
+            "?shortBylineText.runs[0].navigationEndpoint.browseEndpoint.canonicalBaseUrl",
+            "thumbnails[0].thumbnails[0].url",
+            null,
+            null,
+            null,
+            null,
+            null);
+
+    // Number of values read per renderer
+    static final int FIELDS = 10;
+
+    // Path segment selecting the first element of an array
+    static final String FIRST = "[0]";
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+
+    private static final HashMap<String, RendererType> types = new HashMap<String, RendererType>();
+
+    static {
+        // The nested video renderer is only read from within rich items
+        for (RendererType type : values()) {
+            if (type != RICH_VIDEO)
+                types.put(type.key, type);
+        }
+    }
+
+    private final String key;
+    private final String[][] paths;
+    private final boolean[] optional;
+
+    RendererType(String key, String... paths) {
+        this.key = key;
+        this.paths = new String[paths.length][];
+        this.optional = new boolean[paths.length];
+        for (int i = 0; i < paths.length; ++i) {
+            if (paths[i] == null)
+                continue;
+            optional[i] = paths[i].startsWith("?");
+            this.paths[i] = split(optional[i] ? paths[i].substring(1) : paths[i]);
+        }
+    }
+
+    /**
+     * Splits the given path into keys and FIRST segments
+     *
+     * @param path Path such as "title.runs[0].text"
+     * @return The segments of the path
+     */
+    static String[] split(String path) {
+        return path.replace(FIRST, "." + FIRST).split("\\.");
+    }
+
+    /**
+     * Looks up the renderer type with the given key
+     *
+     * @param key Key of the renderer object within an item (e.g., videoRenderer)
+     * @return The renderer type or null if recommendations cannot be read from renderers of this type
+     */
+    public static RendererType fromKey(String key) {
+        return types.get(key);
+    }
+
+    /**
+     * @return Key of the renderer object within an item
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @param field Index of the value in the order of the Recommendation constructor
+     * @return Segments of the path of the value, or null if the value is not part of this renderer type
+     */
+    String[] getPath(int field) {
+        return paths[field];
+    }
+
+    /**
+     * @param field Index of the value in the order of the Recommendation constructor
+     * @return Whether the value is set to an empty string if missing
+     */
+    boolean isOptional(int field) {
+        return optional[field] || paths[field] == null;
+    }
+
+    /**
+     * Creates the recommendation from the values read from a renderer of this type
+     *
+     * @param values Values in the order of the Recommendation constructor, null if missing
+     * @return The recommendation, or null if a required value is missing
+     */
+    Recommendation toRecommendation(String[] values) {
+        for (int i = 0; i < FIELDS; ++i) {
+            if (values[i] != null)
+                continue;
+            if (!isOptional(i)) {
+                Metrics.increment("parser.incomplete." + key);
+                log.warning("Missing values to create recommendation from " + key);
+                return null;
+            }
+            values[i] = "";
+        }
+        return new Recommendation(values[0], values[1], values[2], values[3], values[4], values[5], values[6],
+                values[7], values[8], values[9]);
+    }
+
+    /**
+     * Counts an item which is not a recommendation or whose renderer type is unknown (e.g., ads, shelves, chips)
+     *
+     * @param key Key of the renderer object within the item
+     */
+    static void skipped(String key) {
+        // Marks the end of the loaded items
+        if (!key.equals("continuationItemRenderer"))
+            Metrics.increment("parser.skipped." + key);
+    }
+}
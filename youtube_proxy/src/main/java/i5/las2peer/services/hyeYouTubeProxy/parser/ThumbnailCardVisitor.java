@@ -0,0 +1,135 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ThumbnailCardVisitor
+ *
+ * Collects the images, links, and metadata blocks of all video cards (the parents of thumbnail elements) in a single
+ * walk of the document. Instead of searching the subtree of every card again, the matching elements are appended to
+ * one list per kind in document order; since the elements of a subtree are contiguous in document order, the elements
+ * of a card are the range of each list between entering and leaving the card.
+ */
+class ThumbnailCardVisitor implements NodeVisitor {
+
+    // Positions in the lists of collected elements when entering an element, reused for all elements at a depth
+    private static class Frame {
+        private int imgs;
+        private int links;
+        private int metas;
+        private int card;
+    }
+
+    /**
+     * The elements of a single video card, as views of the visitor's lists which are only valid once the traversal is
+     * finished (the lists must not grow after creating a view)
+     */
+    class Card {
+        private final int imgStart;
+        private final int imgEnd;
+        private final int linkStart;
+        private final int linkEnd;
+        private final int metaStart;
+        private final int metaEnd;
+
+        private Card(Frame frame) {
+            imgStart = frame.imgs;
+            imgEnd = imgs.size();
+            linkStart = frame.links;
+            linkEnd = links.size();
+            metaStart = frame.metas;
+            metaEnd = metas.size();
+        }
+
+        List<Element> getImgs() {
+            return imgs.subList(imgStart, imgEnd);
+        }
+
+        List<Element> getLinks() {
+            return links.subList(linkStart, linkEnd);
+        }
+
+        List<Element> getMetas() {
+            return metas.subList(metaStart, metaEnd);
+        }
+    }
+
+    private final String cardTag;
+    private final String imageTag;
+    private final String linkTag;
+    private final String metaName;
+    private final boolean metaByClass;
+
+    private final ArrayList<Element> imgs = new ArrayList<Element>();
+    private final ArrayList<Element> links = new ArrayList<Element>();
+    private final ArrayList<Element> metas = new ArrayList<Element>();
+    private final ArrayList<Frame> frames = new ArrayList<Frame>();
+    private final ArrayList<Card> cards = new ArrayList<Card>();
+
+    /**
+     * Constructor
+     *
+     * @param cardTag Tag of the elements whose parents are cards (e.g., ytd-thumbnail)
+     * @param imageTag Tag of the images collected per card
+     * @param linkTag Tag of the links collected per card
+     * @param metaName Tag or class of the metadata blocks collected per card
+     * @param metaByClass Whether metaName is a class instead of a tag
+     */
+    ThumbnailCardVisitor(String cardTag, String imageTag, String linkTag, String metaName, boolean metaByClass) {
+        this.cardTag = cardTag;
+        this.imageTag = imageTag;
+        this.linkTag = linkTag;
+        this.metaName = metaName;
+        this.metaByClass = metaByClass;
+    }
+
+    /**
+     * @return The cards found, in the document order of their thumbnails (only complete after the traversal)
+     */
+    List<Card> getCards() {
+        return cards;
+    }
+
+    @Override
+    public void head(Node node, int depth) {
+        if (!(node instanceof Element))
+            return;
+        Element element = (Element) node;
+        while (frames.size() <= depth)
+            frames.add(new Frame());
+        Frame frame = frames.get(depth);
+        frame.imgs = imgs.size();
+        frame.links = links.size();
+        frame.metas = metas.size();
+        frame.card = -1;
+
+        // Elements count towards their own range, like the element itself is part of Element.getElementsByTag
+        String tag = element.tagName();
+        if (tag.equals(imageTag))
+            imgs.add(element);
+        else if (tag.equals(linkTag))
+            links.add(element);
+        if (metaByClass ? element.hasClass(metaName) : tag.equals(metaName))
+            metas.add(element);
+
+        // The parent was entered already, its range ends once it is left
+        if (tag.equals(cardTag) && depth > 0 && frames.get(depth - 1).card < 0) {
+            frames.get(depth - 1).card = cards.size();
+            cards.add(null);
+        }
+    }
+
+    @Override
+    public void tail(Node node, int depth) {
+        if (!(node instanceof Element))
+            return;
+        Frame frame = frames.get(depth);
+        if (frame.card >= 0)
+            cards.set(frame.card, new Card(frame));
+    }
+}
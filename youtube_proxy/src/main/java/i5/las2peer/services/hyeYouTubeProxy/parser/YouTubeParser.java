@@ -6,15 +6,19 @@ import java.util.Iterator;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.lib.CharSequenceReader;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.select.NodeTraversor;
 
 /**
  * YouTubeParser
@@ -30,55 +34,95 @@ public abstract class YouTubeParser {
     private final static String IMAGE_TAG = "img";
     private final static String LINK_TAG = "a";
     private final static String SECONDARY_TAG = "secondary";
+    private final static String CONTINUATION_ITEM_KEY = "continuationItemRenderer";
+    // Keys under which API responses list the actions appending items to the page
+    private final static String[] CONTINUATION_ACTION_KEYS = {
+            "onResponseReceivedActions", "onResponseReceivedEndpoints", "onResponseReceivedCommands" };
+    // Paths of the lists of items within the renderer objects of the pages
+    private final static String[] MAIN_CONTENTS = RendererType.split(
+            "tabs[0].tabRenderer.content.richGridRenderer.contents");
+    private final static String[] ASIDE_CONTENTS = RendererType.split("secondaryResults.secondaryResults.results");
+    private final static String[] RESULTS_SECTIONS = RendererType.split("primaryContents.sectionListRenderer.contents");
+    private final static String[] SECTION_CONTENTS = RendererType.split("itemSectionRenderer.contents");
+    private final static String[] APPENDED_ITEMS = RendererType.split(
+            "appendContinuationItemsAction.continuationItems");
+    private final static String[] RELOADED_ITEMS = RendererType.split(
+            "reloadContinuationItemsCommand.continuationItems");
+    private final static String[] CONTINUATION_TOKEN = RendererType.split(
+            CONTINUATION_ITEM_KEY + ".continuationEndpoint.continuationCommand.token");
 
     private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+    private static final ParsingChain defaultChain = new ParsingChain();
 
     /**
      * Helper function used to find the given object key in the given html code and convert its value into a Json object
      *
+     * The object is parsed straight from the html, so strings containing braces are handled correctly and only the
+     * resulting Json tree is allocated instead of a copy of the rest of the page.
+     *
      * @param html Raw html returned in response to automated browser request
      * @param mainObjKey The string used to identify the beginning of the Json object containing the relevant data
      * @return Relevant video information for all YouTube recommendations displayed on given page as Json object
      */
     private static JsonObject getMainObject(String html, String mainObjKey) {
-        int htmlLength = html.length();
+        JsonReader reader = getMainObjectReader(html, mainObjKey);
+        if (reader == null)
+            return null;
+
+        // Parse the object in place, the reader stops right after its closing brace
+        try {
+            JsonElement mainObj = JsonParser.parseReader(reader);
+            return mainObj.isJsonObject() ? mainObj.getAsJsonObject() : null;
+        } catch (JsonParseException e) {
+            // E.g., the page was cut off
+            Metrics.increment("parser.malformed");
+            log.warning("Unable to parse " + mainObjKey + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Helper function reading the array at the given path without throwing exceptions for missing values
+     *
+     * @param element Element the path starts from
+     * @param path Keys and FIRST segments leading to the array
+     * @return The array, or null if it is missing
+     */
+    private static JsonArray getArray(JsonElement element, String[] path) {
+        element = RecommendationBuilder.get(element, path);
+        return element != null && element.isJsonArray() ? element.getAsJsonArray() : null;
+    }
+
+    /**
+     * Helper function counting renderer objects lacking the list of items, e.g., because YouTube changed its layout
+     *
+     * @param rendererKey Key of the renderer object
+     * @return Empty list of recommendations
+     */
+    private static ArrayList<Recommendation> missingContents(String rendererKey) {
+        Metrics.increment("parser.missingContents." + rendererKey);
+        log.warning("Unable to find recommendations in " + rendererKey);
+        return new ArrayList<Recommendation>();
+    }
 
+    /**
+     * Helper function used to find the given object key in the given html code and read its value in place
+     *
+     * @param html Raw html returned in response to automated browser request
+     * @param mainObjKey The string used to identify the beginning of the Json object containing the relevant data
+     * @return Json reader positioned at the beginning of the object, or null if the key could not be found
+     */
+    private static JsonReader getMainObjectReader(String html, String mainObjKey) {
         // Try to find given object key
         int pos = html.indexOf(mainObjKey);
-        if (pos < 0 || pos >= htmlLength + mainObjKey.length())
+        if (pos < 0)
             return null;
 
-        // Go to beginning of Json String
-        pos += mainObjKey.length();
-        while (html.charAt(pos) != '{')
-            ++pos;
-
-        // Write the object into buffer
-        char[] buffer = new char[htmlLength - pos];
-        buffer[0] = '{';
-        int bracketCount = 1;
-        int bufferLength = 1;
-        ++pos;
-        while (bracketCount > 0 && pos < htmlLength) {
-            char c = html.charAt(pos);
-            buffer[bufferLength] = c;
-            ++pos;
-            ++bufferLength;
-            if (c == '{')
-                ++bracketCount;
-            else if (c == '}') //&& (html.charAt(pos-1) != '\\' || html.charAt(pos-2) == '\\'))
-                --bracketCount;
-        }
-
-        // Convert buffer to Json
-        JsonObject mainObj;
-        try {
-            mainObj = JsonParser.parseString(new String(buffer).substring(0, bufferLength)).getAsJsonObject();
-        } catch (Exception e) {
-            log.printStackTrace(e);
+        // Go to beginning of Json object
+        pos = html.indexOf('{', pos + mainObjKey.length());
+        if (pos < 0)
             return null;
-        }
-        return mainObj;
+        return new JsonReader(new CharSequenceReader(html, pos, html.length()));
     }
 
     /**
@@ -91,116 +135,309 @@ public abstract class YouTubeParser {
         ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
         Iterator<JsonElement> it = contents.iterator();
         while (it.hasNext()) {
-            JsonObject recObj = it.next().getAsJsonObject();
-            Recommendation rec = RecommendationBuilder.build(recObj);
-            if (rec == null)
-                log.warning("Error creating recommendation object from JSON data");
-            else
+            JsonElement item = it.next();
+            if (!item.isJsonObject())
+                continue;
+            // Items which are not recommendations are counted and skipped by the builder
+            Recommendation rec = RecommendationBuilder.build(item.getAsJsonObject());
+            if (rec != null)
                 recs.add(rec);
         }
         return recs;
     }
 
     /**
-     * YouTube's HTML response mainly consists of JavaScript which loads the content,
-     * this function tries to extract the displayed recommendations from this JS code.
+     * Returns the key of the renderer object holding the recommendations within the ytInitialData of the given page
      *
-     * @param html the HTML of YouTube's main page
-     * @return Personalized YouTube recommendations
+     * @param pageType The type of YouTube page
+     * @return Key of the renderer object within ytInitialData.contents
      */
-    private static ArrayList<Recommendation> getRecsFromMainJS(String html) {
-        ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
-        final String mainObjKey = "twoColumnBrowseResultsRenderer";
+    public static String getRendererKey(PageType pageType) {
+        switch (pageType) {
+            case WATCH:
+                return "twoColumnWatchNextResults";
+            case RESULTS:
+                return "twoColumnSearchResultsRenderer";
+            default:
+                return "twoColumnBrowseResultsRenderer";
+        }
+    }
 
-        JsonObject mainObj = getMainObject(html, mainObjKey);
-        if (mainObj == null) {
-            log.severe("Unable to find " + mainObjKey + " in given HTML");
-            return recs;
+    /**
+     * Returns the path of YouTube's internal API endpoint delivering the recommendations of the given page
+     *
+     * @param pageType The type of YouTube page
+     * @return Path of the API endpoint (e.g., /youtubei/v1/browse)
+     */
+    public static String getApiPath(PageType pageType) {
+        switch (pageType) {
+            case WATCH:
+                return "/youtubei/v1/next";
+            case RESULTS:
+                return "/youtubei/v1/search";
+            default:
+                return "/youtubei/v1/browse";
         }
+    }
 
-        JsonArray contents;
-        try {
-            contents = mainObj.get("tabs").getAsJsonArray().get(0).getAsJsonObject().get("tabRenderer")
-                    .getAsJsonObject().get("content").getAsJsonObject().get("richGridRenderer").getAsJsonObject()
-                    .get("contents").getAsJsonArray();
+    /**
+     * Helper function extracting the displayed recommendations from the renderer object of YouTube's main page
+     *
+     * @param mainObj The twoColumnBrowseResultsRenderer object
+     * @return Personalized YouTube recommendations
+     */
+    private static ArrayList<Recommendation> getRecsFromMain(JsonObject mainObj) {
+        JsonArray contents = getArray(mainObj, MAIN_CONTENTS);
+        if (contents == null)
+            return missingContents(getRendererKey(PageType.MAIN));
 
-        } catch (Exception e) {
-            log.printStackTrace(e);
-            return recs;
-        }
+        // Get recommendation data from array
+        return parseRecsFromContents(contents);
+    }
+
+    /**
+     * Helper function extracting the displayed recommendations from the renderer object of a YouTube video page
+     *
+     * @param mainObj The twoColumnWatchNextResults object
+     * @return Personalized YouTube recommendations
+     */
+    private static ArrayList<Recommendation> getRecsFromAside(JsonObject mainObj) {
+        JsonArray contents = getArray(mainObj, ASIDE_CONTENTS);
+        // Sometimes there is some junk object before the recommendation data
+        if (contents != null && contents.size() > 1 && contents.get(0).isJsonObject() &&
+                contents.get(0).getAsJsonObject().has("relatedChipCloudRenderer"))
+            contents = getArray(contents.get(1), SECTION_CONTENTS);
+        if (contents == null)
+            return missingContents(getRendererKey(PageType.WATCH));
 
         // Get recommendation data from array
-        recs = parseRecsFromContents(contents);
-        return recs;
+        return parseRecsFromContents(contents);
+    }
+
+    /**
+     * Helper function extracting the displayed search results from the renderer object of a YouTube results page
+     *
+     * @param mainObj The twoColumnSearchResultsRenderer object
+     * @return Personalized YouTube search results
+     */
+    private static ArrayList<Recommendation> getRecsFromResults(JsonObject mainObj) {
+        JsonArray sections = getArray(mainObj, RESULTS_SECTIONS);
+        JsonArray contents = sections == null || sections.size() == 0 ? null :
+                getArray(sections.get(0), SECTION_CONTENTS);
+        if (contents == null)
+            return missingContents(getRendererKey(PageType.RESULTS));
+
+        // Get recommendation data from array
+        return parseRecsFromContents(contents);
     }
 
     /**
      * YouTube's HTML response mainly consists of JavaScript which loads the content,
      * this function tries to extract the displayed recommendations from this JS code.
      *
-     * @param html the HTML of YouTube video page
+     * @param pageType The type of YouTube page the HTML was obtained from
+     * @param html the HTML of the YouTube page
      * @return Personalized YouTube recommendations
      */
-    private static ArrayList<Recommendation> getRecsFromAsideJS(String html) {
-        ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
-        final String mainObjKey = "twoColumnWatchNextResults";
+    private static ArrayList<Recommendation> getRecsFromJS(PageType pageType, String html) {
+        final String mainObjKey = getRendererKey(pageType);
 
-        JsonObject mainObj = getMainObject(html, mainObjKey);
-        if (mainObj == null) {
+        // Only the values needed for the recommendations are read, without building a Json tree of the page
+        JsonReader reader = getMainObjectReader(html, mainObjKey);
+        if (reader == null) {
             log.severe("Unable to find " + mainObjKey + " in given HTML");
-            return recs;
+            return new ArrayList<Recommendation>();
         }
+        return ProjectionParser.parse(pageType, reader);
+    }
 
-        JsonArray contents;
-        try {
-            contents = mainObj.get("secondaryResults").getAsJsonObject()
-                    .get("secondaryResults").getAsJsonObject().get("results")
-                    .getAsJsonArray();
-            // Sometimes there is some junk object before the recommendation data
-            if (contents.get(0).getAsJsonObject().has("relatedChipCloudRenderer"))
-                contents = contents.get(1).getAsJsonObject().get("itemSectionRenderer")
-                        .getAsJsonObject().get("contents").getAsJsonArray();
-        } catch (Exception e) {
-            log.printStackTrace(e);
-            return recs;
-        }
+    /**
+     * Parses the given HTML using the default order of parsing strategies for the given page type
+     *
+     * @param pageType The type of YouTube page the HTML was obtained from
+     * @param html the HTML of the YouTube page
+     * @return Personalized YouTube recommendations
+     */
+    public static ArrayList<Recommendation> parse(PageType pageType, String html) {
+        return defaultChain.parse(pageType, html);
+    }
 
-        // Get recommendation data from array
-        recs = parseRecsFromContents(contents);
-        return recs;
+    /**
+     * Extracts the recommendations from the ytInitialData object embedded in the given server-rendered HTML, without
+     * building a DOM of the page
+     *
+     * @param pageType The type of YouTube page the HTML was obtained from
+     * @param html the HTML of the YouTube page
+     * @return Personalized YouTube recommendations, empty if the embedded data could not be found
+     */
+    public static ArrayList<Recommendation> parseEmbeddedData(PageType pageType, String html) {
+        return getRecsFromJS(pageType, html);
     }
 
     /**
-     * YouTube's HTML response mainly consists of JavaScript which loads the content,
-     * this function tries to extract the displayed recommendations from this JS code.
+     * Extracts the recommendations from the renderer object read from ytInitialData in the browser
      *
-     * @param html the HTML of YouTube results page
-     * @return Personalized YouTube search results
+     * @param pageType The type of YouTube page the renderer object was obtained from
+     * @param renderer The object stored under the page type's renderer key in ytInitialData.contents
+     * @return Personalized YouTube recommendations
      */
-    private static ArrayList<Recommendation> getRecsFromResultsJS(String html) {
-        ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
-        final String mainObjKey = "twoColumnSearchResultsRenderer";
+    public static ArrayList<Recommendation> parseInitialData(PageType pageType, JsonObject renderer) {
+        return getRecsFromRenderer(pageType, renderer);
+    }
 
-        JsonObject mainObj = getMainObject(html, mainObjKey);
-        if (mainObj == null) {
-            log.severe("Unable to find " + mainObjKey + " in given HTML");
-            return recs;
+    /**
+     * Extracts the recommendations from the serialized renderer object read from ytInitialData in the browser, without
+     * building a Json tree
+     *
+     * @param pageType The type of YouTube page the renderer object was obtained from
+     * @param renderer The object stored under the page type's renderer key in ytInitialData.contents as Json string
+     * @return Personalized YouTube recommendations
+     */
+    public static ArrayList<Recommendation> parseInitialData(PageType pageType, String renderer) {
+        return ProjectionParser.parse(pageType, new JsonReader(new CharSequenceReader(renderer, 0,
+                renderer.length())));
+    }
+
+    /**
+     * Helper function extracting the recommendations from the renderer object of the given page
+     *
+     * @param pageType The type of YouTube page the renderer object was obtained from
+     * @param renderer The object stored under the page type's renderer key in ytInitialData.contents
+     * @return Personalized YouTube recommendations
+     */
+    private static ArrayList<Recommendation> getRecsFromRenderer(PageType pageType, JsonObject renderer) {
+        switch (pageType) {
+            case WATCH:
+                return getRecsFromAside(renderer);
+            case RESULTS:
+                return getRecsFromResults(renderer);
+            default:
+                return getRecsFromMain(renderer);
         }
+    }
 
-        JsonArray contents;
-        try {
-            contents = mainObj.get("primaryContents").getAsJsonObject().get("sectionListRenderer").getAsJsonObject()
-                    .get("contents").getAsJsonArray().get(0).getAsJsonObject().get("itemSectionRenderer")
-                    .getAsJsonObject().get("contents").getAsJsonArray();
+    /**
+     * Helper function collecting the items appended to the page by the continuation actions of the given API response
+     *
+     * @param response Json response of one of YouTube's internal API endpoints
+     * @return The appended items, empty if the response does not contain any continuation actions
+     */
+    private static JsonArray getContinuationItems(JsonObject response) {
+        JsonArray items = new JsonArray();
+        for (String actionsKey : CONTINUATION_ACTION_KEYS) {
+            if (!response.has(actionsKey) || !response.get(actionsKey).isJsonArray())
+                continue;
+            for (JsonElement action : response.get(actionsKey).getAsJsonArray()) {
+                JsonArray appended = getArray(action, APPENDED_ITEMS);
+                if (appended == null)
+                    appended = getArray(action, RELOADED_ITEMS);
+                if (appended == null)
+                    continue;
+                for (JsonElement item : appended) {
+                    // Search results are wrapped in item sections
+                    JsonArray section = getArray(item, SECTION_CONTENTS);
+                    if (section != null)
+                        items.addAll(section);
+                    else
+                        items.add(item);
+                }
+            }
+        }
+        return items;
+    }
 
-        } catch (Exception e) {
-            log.printStackTrace(e);
-            return recs;
+    /**
+     * Extracts the recommendations from a response of YouTube's internal API (e.g., /youtubei/v1/browse), which either
+     * holds the whole page's renderer object or the items appended when scrolling down
+     *
+     * @param pageType The type of YouTube page the API request was made for
+     * @param response The Json response of the API
+     * @return Personalized YouTube recommendations
+     */
+    public static ArrayList<Recommendation> parseApiResponse(PageType pageType, JsonObject response) {
+        JsonElement renderer = RecommendationBuilder.get(response,
+                new String[] { "contents", getRendererKey(pageType) });
+        if (renderer != null && renderer.isJsonObject())
+            return parseInitialData(pageType, renderer.getAsJsonObject());
+        return parseRecsFromContents(getContinuationItems(response));
+    }
+
+    /**
+     * Finds the renderer object holding the recommendations in the ytInitialData embedded in the given HTML
+     *
+     * @param pageType The type of YouTube page the HTML was obtained from
+     * @param html the HTML of the YouTube page
+     * @return The renderer object, or null if it could not be found
+     */
+    public static JsonObject getRenderer(PageType pageType, String html) {
+        return getMainObject(html, getRendererKey(pageType));
+    }
+
+    /**
+     * Helper function reading the continuation token from the continuation item in the given list of items
+     *
+     * @param items Items of a YouTube page, the continuation item is usually the last one
+     * @return Token used to request the next items, or null if there are no further items
+     */
+    private static String getTokenFromItems(JsonArray items) {
+        for (int i = items.size() - 1; i >= 0; --i) {
+            JsonElement item = items.get(i);
+            if (!item.isJsonObject() || !item.getAsJsonObject().has(CONTINUATION_ITEM_KEY))
+                continue;
+            JsonElement token = RecommendationBuilder.get(item, CONTINUATION_TOKEN);
+            return token != null && token.isJsonPrimitive() ? token.getAsString() : null;
         }
+        return null;
+    }
 
-        // Get recommendation data from array
-        recs = parseRecsFromContents(contents);
-        return recs;
+    /**
+     * Reads the token used to request the items following the first screen of the given page
+     *
+     * @param pageType The type of YouTube page (only the main page and search results can be continued)
+     * @param renderer The renderer object of the page
+     * @return Token used to request the next items, or null if there are no further items
+     */
+    public static String getContinuationToken(PageType pageType, JsonObject renderer) {
+        JsonArray items;
+        switch (pageType) {
+            case MAIN:
+                items = getArray(renderer, MAIN_CONTENTS);
+                break;
+            case RESULTS:
+                items = getArray(renderer, RESULTS_SECTIONS);
+                break;
+            default:
+                items = null;
+                break;
+        }
+        return items == null ? null : getTokenFromItems(items);
+    }
+
+    /**
+     * Reads the token used to request the items following the ones contained in the given API response
+     *
+     * @param response Json response of one of YouTube's internal API endpoints
+     * @return Token used to request the next items, or null if there are no further items
+     */
+    public static String getApiContinuationToken(JsonObject response) {
+        return getTokenFromItems(getContinuationItems(response));
+    }
+
+    /**
+     * Reads a value of the ytcfg configuration embedded in the given HTML (e.g., INNERTUBE_API_KEY)
+     *
+     * @param html the HTML of a YouTube page
+     * @param key The configuration key
+     * @return The string value, or null if the key could not be found
+     */
+    public static String getConfigValue(String html, String key) {
+        String prefix = "\"" + key + "\":\"";
+        int start = html.indexOf(prefix);
+        if (start < 0)
+            return null;
+        start += prefix.length();
+        int end = html.indexOf('"', start);
+        return end < 0 ? null : html.substring(start, end);
     }
 
     /**
@@ -210,30 +447,7 @@ public abstract class YouTubeParser {
      * @return Personalized YouTube recommendations
      */
     public static ArrayList<Recommendation> mainPage(String html) {
-          // The proper scraping is unfortunately a bit too inconsistent
-//        ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
-//        Document doc = Jsoup.parse(html);
-//        Element body = doc.body();
-//        Elements thumbnails = body.getElementsByTag(THUMBNAIL_TAG);
-//        Iterator<Element> it = thumbnails.iterator();
-//        while (it.hasNext()) {
-//            Element recommendation = it.next().parent();
-//            Elements imgs = recommendation.getElementsByTag(IMAGE_TAG);
-//            Elements links = recommendation.getElementsByTag(LINK_TAG);
-//            Elements metaBlock = recommendation.getElementsByClass(METADATA_CLASS);
-//
-//            Recommendation rec = RecommendationBuilder.build(imgs, links, metaBlock);
-//            if (rec == null)
-//                log.warning("Error creating recommendation object from HTML data");
-//            else
-//                recs.add(rec);
-//        }
-//
-        // If no recommendations were found, try another way
-//        if (recs.isEmpty())
-            return getRecsFromMainJS(html);
-//        else
-//            return recs;
+        return parse(PageType.MAIN, html);
     }
 
     /**
@@ -243,28 +457,7 @@ public abstract class YouTubeParser {
      * @return Personalized YouTube recommendations
      */
     public static ArrayList<Recommendation> aside(String html) {
-        ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
-        Document doc = Jsoup.parse(html);
-        Element body = doc.body();
-        Elements thumbnails = body.getElementsByTag(THUMBNAIL_TAG);
-        Iterator<Element> it = thumbnails.iterator();
-        while (it.hasNext()) {
-            Element recommendation = it.next().parent();
-            Elements imgs = recommendation.getElementsByTag(IMAGE_TAG);
-            Elements links = recommendation.getElementsByTag(LINK_TAG);
-
-            Recommendation rec = RecommendationBuilder.build(imgs, links);
-            if (rec == null)
-                log.warning("Error creating recommendation object from HTML data");
-            else
-                recs.add(rec);
-        }
-
-        // If no recommendations were found, try another way
-        if (recs.isEmpty())
-            return getRecsFromAsideJS(html);
-        else
-            return recs;
+        return parse(PageType.WATCH, html);
     }
 
     /**
@@ -274,29 +467,49 @@ public abstract class YouTubeParser {
      * @return Personalized YouTube search results
      */
     public static ArrayList<Recommendation> resultsPage(String html) {
-        ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
+        return parse(PageType.RESULTS, html);
+    }
+
+    /**
+     * Builds the DOM of the given HTML and extracts the recommendations from the rendered video elements
+     *
+     * The images, links, and metadata blocks of all video cards are collected in a single walk of the document, instead
+     * of searching the subtree of each card once per kind of element.
+     *
+     * @param pageType The type of YouTube page the HTML was obtained from
+     * @param html the HTML of the YouTube page
+     * @return Personalized YouTube recommendations, empty if no video elements could be found
+     */
+    public static ArrayList<Recommendation> parseDom(PageType pageType, String html) {
         // This seems to cause problems sometimes ...
         Document doc = Jsoup.parse(html);
-        Element body = doc.body();
-        Elements thumbnails = body.getElementsByTag(THUMBNAIL_TAG);
-        Iterator<Element> it = thumbnails.iterator();
-        while (it.hasNext()) {
-            Element recommendation = it.next().parent();
-            Elements imgs = recommendation.getElementsByTag(IMAGE_TAG);
-            Elements links = recommendation.getElementsByTag(LINK_TAG);
-            Elements metaBlock = recommendation.getElementsByTag(METADATA_CLASS);
-       
-            Recommendation rec = RecommendationBuilder.build(imgs, links, metaBlock);
+        return parseDom(pageType, doc.body());
+    }
+
+    /**
+     * Extracts the recommendations from the rendered video elements within the given element
+     *
+     * @param pageType The type of YouTube page the element belongs to
+     * @param body The element containing the video elements, usually the body of the page
+     * @return Personalized YouTube recommendations, empty if no video elements could be found
+     */
+    static ArrayList<Recommendation> parseDom(PageType pageType, Element body) {
+        ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
+        // Search results use the metadata block's tag, the main page its class
+        ThumbnailCardVisitor visitor = new ThumbnailCardVisitor(THUMBNAIL_TAG, IMAGE_TAG, LINK_TAG, METADATA_CLASS,
+                pageType == PageType.MAIN);
+        new NodeTraversor(visitor).traverse(body);
+        for (ThumbnailCardVisitor.Card card : visitor.getCards()) {
+            Recommendation rec;
+            if (pageType == PageType.WATCH)
+                rec = RecommendationBuilder.build(card.getImgs(), card.getLinks());
+            else
+                rec = RecommendationBuilder.build(card.getImgs(), card.getLinks(), card.getMetas());
             if (rec == null)
                 log.warning("Error creating recommendation object from HTML data");
             else
                 recs.add(rec);
         }
-
-        // If no recommendations were found, try another way
-        if (recs.isEmpty())
-            return getRecsFromResultsJS(html);
-        else
-            return recs;
+        return recs;
     }
 }
@@ -0,0 +1,89 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+/**
+ * AdaptiveConcurrencyLimiter
+ *
+ * Limits the number of requests to YouTube in progress at the same time using additive increase, multiplicative
+ * decrease: the limit grows slowly while requests succeed within the latency target, and is cut back as soon as
+ * requests fail or take too long. Only requests started after the last decrease can cause another one, so a burst of
+ * slow responses lowers the limit once instead of collapsing it. Requests exceeding the limit are rejected right away
+ * instead of waiting for a permit, so callers have to tell their clients to retry.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final int MIN_LIMIT = 1;
+    private static final double BACKOFF_RATIO = 0.7;
+
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private double limit;
+    private int inFlight = 0;
+    private long lastDecrease = System.nanoTime();
+
+    /**
+     * Constructor
+     *
+     * @param initialLimit Number of concurrent requests allowed at first
+     * @param maxLimit Upper bound of the limit
+     * @param latencyTargetMillis Requests taking longer than this are treated as sign of overload
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit, long latencyTargetMillis) {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = Math.max(MIN_LIMIT, Math.min(this.maxLimit, initialLimit));
+        this.latencyTargetNanos = latencyTargetMillis * 1000000L;
+        Metrics.registerGauge("upstream.limiter.limit", this::getLimit);
+        Metrics.registerGauge("upstream.limiter.inFlight", this::getInFlight);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Admits a request if the current limit permits
+     *
+     * @return Whether the request may be sent, in which case release() or cancel() has to be called afterwards
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            Metrics.increment("upstream.limiter.rejected");
+            return false;
+        }
+        ++inFlight;
+        return true;
+    }
+
+    /**
+     * Gives back a permit without sending the request
+     */
+    public synchronized void cancel() {
+        --inFlight;
+    }
+
+    /**
+     * Gives back the permit of a finished request and adapts the limit to its outcome
+     *
+     * @param startNanos Time the request was started as returned by System.nanoTime()
+     * @param failed Whether the request failed due to YouTube
+     */
+    public synchronized void release(long startNanos, boolean failed) {
+        --inFlight;
+        long latency = System.nanoTime() - startNanos;
+        if (failed || latency > latencyTargetNanos) {
+            if (startNanos - lastDecrease < 0)
+                return;
+            limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            lastDecrease = System.nanoTime();
+            Metrics.increment("upstream.limiter.decreases");
+        } else if (inFlight + 1 >= limit / 2) {
+            // Only grow while the limit is actually used, otherwise it says nothing about YouTube's capacity
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+}
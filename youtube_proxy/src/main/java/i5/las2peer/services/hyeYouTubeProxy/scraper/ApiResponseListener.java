@@ -0,0 +1,110 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Response;
+import com.microsoft.playwright.TimeoutError;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Deadline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ApiResponseListener
+ *
+ * Watches the responses of YouTube's internal API while a page is loading, so the recommendations can be read from the
+ * first response holding them instead of waiting for the navigation to finish. Playwright only dispatches events while
+ * one of its methods is running, so the page is navigated without waiting for it to load, and await() then waits for
+ * API responses until either one holds recommendations or the page has loaded without one.
+ */
+public class ApiResponseListener {
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+    // Longest time between two checks whether the page has loaded while no API responses arrive
+    private static final long LOAD_CHECK_MILLIS = 50;
+
+    private final Page page;
+    private final String apiPath;
+    private final String rendererKey;
+    private final ArrayList<Response> responses = new ArrayList<Response>();
+    private int examined = 0;
+    private boolean loaded = false;
+
+    /**
+     * Constructor, has to be called before navigating the page
+     *
+     * @param page The page about to be navigated
+     * @param apiPath Path of the API requests whose responses hold the recommendations (e.g., /youtubei/v1/next)
+     * @param rendererKey Key of the renderer object holding the recommendations
+     * @param waitForLoad Whether the page counts as loaded once the load event fired instead of DOMContentLoaded
+     */
+    public ApiResponseListener(Page page, String apiPath, String rendererKey, boolean waitForLoad) {
+        this.page = page;
+        this.apiPath = apiPath;
+        this.rendererKey = rendererKey;
+        page.onResponse(resp -> {
+            if (isApiResponse(resp))
+                responses.add(resp);
+        });
+        if (waitForLoad)
+            page.onLoad(p -> loaded = true);
+        else
+            page.onDOMContentLoaded(p -> loaded = true);
+    }
+
+    private boolean isApiResponse(Response resp) {
+        return resp.status() == 200 && resp.url().contains(apiPath);
+    }
+
+    /**
+     * @return Body of the first API response received so far which holds videos, or null if there is none yet
+     */
+    private String nextBody() {
+        while (examined < responses.size()) {
+            Response resp = responses.get(examined++);
+            try {
+                String body = resp.text();
+                // Skip responses which do not contain any videos
+                if (body.contains(rendererKey) || body.contains("continuationItems"))
+                    return body;
+            } catch (Exception e) {
+                log.printStackTrace(e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits until an API response holding videos arrives or the page has loaded, whichever happens first
+     *
+     * @param deadline Deadline of the request, limits the time spent waiting
+     * @return Body of the API response, or null if the page loaded or the deadline expired before one arrived
+     */
+    public String await(Deadline deadline) {
+        while (true) {
+            String body = nextBody();
+            if (body != null || loaded)
+                return body;
+            long remaining = deadline.getRemainingMillis();
+            if (remaining <= 0)
+                return null;
+            try {
+                // Returns as soon as an API response arrives, otherwise checks again whether the page has loaded
+                Page.WaitForResponseOptions options = new Page.WaitForResponseOptions();
+                options.setTimeout(Math.min(LOAD_CHECK_MILLIS, remaining));
+                page.waitForResponse(this::isApiResponse, options, () -> { });
+            } catch (TimeoutError e) {
+                // Neither an API response nor the page yet
+            }
+        }
+    }
+
+    /**
+     * @return The API responses received so far, e.g., to record them
+     */
+    public List<Response> getResponses() {
+        return responses;
+    }
+}
@@ -0,0 +1,23 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.microsoft.playwright.BrowserContext;
+
+/**
+ * BrowserTask
+ *
+ * Work executed by a browser worker inside a browser context which was set up with the cookies and headers of the
+ * requested owner.
+ *
+ * @param <T> Type of the result
+ */
+public interface BrowserTask<T> {
+
+    /**
+     * Executed on the thread of the browser worker owning the given context
+     *
+     * @param context Browser context with the owner's cookies and headers applied
+     * @return The result of the task
+     * @throws Exception If the task failed, the context is discarded instead of being returned to the pool
+     */
+    T run(BrowserContext context) throws Exception;
+}
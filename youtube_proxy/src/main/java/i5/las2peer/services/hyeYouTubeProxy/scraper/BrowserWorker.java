@@ -0,0 +1,163 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.Playwright;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * BrowserWorker
+ *
+ * Thread owning its own Playwright instance, browser, and browser context pool. Since Playwright objects are not
+ * thread-safe, they are only ever accessed from this thread, which takes jobs from the queue shared by all workers.
+ */
+public class BrowserWorker extends Thread {
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+    // Time after which an idle worker closes unused browser contexts and checks whether its browser should be recycled
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+
+    private final ScrapeEngine engine;
+    private final int generation;
+    private final BlockingQueue<ScrapeEngine.Job<?>> queue;
+    private final ContextPool contextPool;
+    private final Playwright playwright;
+    private final Browser browser;
+    private volatile boolean running = true;
+    private volatile boolean disconnected = false;
+    // Set once a replacement for this worker is being launched
+    private final AtomicBoolean recycling = new AtomicBoolean(false);
+
+    /**
+     * Constructor, launches the browser right away so that startup failures surface when the worker is created
+     *
+     * @param engine The engine which replaces this worker once its browser has to be recycled
+     * @param generation Number of the worker used to name the thread, increasing with every replacement
+     * @param queue The job queue shared by all workers
+     * @param contextPoolSize Maximum number of browser contexts kept open by this worker
+     * @param contextIdleTimeoutMillis Time after which an unused browser context is closed
+     */
+    public BrowserWorker(ScrapeEngine engine, int generation, BlockingQueue<ScrapeEngine.Job<?>> queue,
+                         int contextPoolSize, long contextIdleTimeoutMillis) {
+        super("hye-browser-worker-" + generation);
+        setDaemon(true);
+        this.engine = engine;
+        this.generation = generation;
+        this.queue = queue;
+        // Playwright objects may be created on one thread as long as only one thread uses them at a time
+        this.playwright = Playwright.create();
+        this.browser = playwright.chromium().launch();
+        this.browser.onDisconnected(b -> {
+            disconnected = true;
+            engine.recycle(this, "disconnected");
+        });
+        this.contextPool = new ContextPool(browser, contextPoolSize, contextIdleTimeoutMillis);
+    }
+
+    public ContextPool getContextPool() {
+        return contextPool;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Marks this worker as being replaced
+     *
+     * @return False if a replacement is already being launched
+     */
+    boolean startRecycling() {
+        return recycling.compareAndSet(false, true);
+    }
+
+    /**
+     * Allows to recycle this worker again, e.g., if launching the replacement failed
+     */
+    void abortRecycling() {
+        recycling.set(false);
+    }
+
+    public boolean isRecycling() {
+        return recycling.get();
+    }
+
+    @Override
+    public void run() {
+        // A disconnected browser cannot handle any further jobs, leave them to the other workers or the replacement
+        while (running && !disconnected) {
+            ScrapeEngine.Job<?> job;
+            try {
+                job = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (job != null)
+                execute(job);
+            contextPool.evictIdle();
+            engine.checkRecycling(this);
+        }
+        try {
+            contextPool.close();
+            browser.close();
+            playwright.close();
+        } catch (Exception e) {
+            log.printStackTrace(e);
+        }
+    }
+
+    /**
+     * Runs the given job in a browser context of the job's owner and completes its future
+     *
+     * @param job The job to execute
+     * @param <T> Type of the job's result
+     */
+    private <T> void execute(ScrapeEngine.Job<T> job) {
+        Metrics.recordTime("scrapeEngine.queueWait", System.nanoTime() - job.getSubmitted());
+        // Nobody is waiting for the result anymore
+        if (job.getFuture().isDone())
+            return;
+
+        long start = System.nanoTime();
+        ContextPool.PooledContext context = null;
+        try {
+            context = contextPool.checkout(job.getIdentity());
+            T result = job.getTask().run(context.getContext());
+            // A job cancelled while running may have left its pages hanging, close its context (in finally)
+            if (job.getFuture().isCancelled()) {
+                Metrics.increment("scrapeEngine.cancelled");
+                return;
+            }
+            contextPool.checkin(context);
+            context = null;
+            job.getFuture().complete(result);
+        } catch (Throwable e) {
+            job.getFuture().completeExceptionally(e);
+        } finally {
+            if (context != null)
+                contextPool.discard(context);
+            Metrics.recordTime("scrapeEngine.execution", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Stops the worker once its current job is done, then closes its browser
+     */
+    public void retire() {
+        running = false;
+    }
+
+    /**
+     * Stops the worker after its current job and closes its browser
+     */
+    public void shutdown() {
+        running = false;
+        interrupt();
+    }
+}
@@ -0,0 +1,167 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+/**
+ * CircuitBreaker
+ *
+ * Stops sending requests to YouTube for a while once too many of the recent requests failed. After the break, a
+ * single trial request is let through; the circuit closes again if it succeeds and stays open otherwise. Only outcomes
+ * of requests admitted since the last change of state are taken into account, and requests which were cancelled
+ * because their result was no longer needed count as neither success nor failure.
+ */
+public class CircuitBreaker {
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+    // Number of recent requests the failure rate is computed from, and the number required before opening
+    private static final int WINDOW_SIZE = 20;
+    private static final int MIN_CALLS = 10;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final boolean[] outcomes = new boolean[WINDOW_SIZE];
+    private int calls = 0;
+    private int failures = 0;
+    private int next = 0;
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    private boolean trialInFlight = false;
+    // Incremented on every change of state, tells which state a request was admitted in
+    private long epoch = 0;
+
+    /**
+     * Admission of a single request, handed back along with its outcome
+     */
+    public static class Permit {
+        private final long epoch;
+        private final boolean trial;
+
+        private Permit(long epoch, boolean trial) {
+            this.epoch = epoch;
+            this.trial = trial;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param failureRateThreshold Share of failed recent requests (between 0 and 1) at which the circuit opens
+     * @param openMillis Time the circuit stays open before a trial request is let through
+     */
+    public CircuitBreaker(double failureRateThreshold, long openMillis) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = Math.max(0, openMillis);
+        Metrics.registerGauge("upstream.breaker.state", () -> getState().ordinal());
+        Metrics.registerGauge("upstream.breaker.failureRate", this::getFailureRate);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return calls > 0 ? (double) failures / calls : 0;
+    }
+
+    /**
+     * Admits a request unless the circuit is open
+     *
+     * @return Permit of the request if it may be sent, in which case record() or cancel() has to be called with it
+     * afterwards, otherwise null
+     */
+    public synchronized Permit tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            ++epoch;
+            trialInFlight = false;
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+            Metrics.increment("upstream.breaker.rejected");
+            return null;
+        }
+        // Only a single trial request is admitted while half open
+        if (state == State.HALF_OPEN) {
+            trialInFlight = true;
+            return new Permit(epoch, true);
+        }
+        return new Permit(epoch, false);
+    }
+
+    /**
+     * Records the outcome of an admitted request
+     *
+     * @param permit The permit returned when the request was admitted
+     * @param failed Whether the request failed due to YouTube
+     */
+    public synchronized void record(Permit permit, boolean failed) {
+        // Requests admitted before the last change of state tell nothing about the current state
+        if (permit.epoch != epoch)
+            return;
+        if (permit.trial) {
+            trialInFlight = false;
+            if (failed) {
+                open();
+            } else {
+                log.info("Circuit to YouTube closed");
+                state = State.CLOSED;
+                ++epoch;
+                calls = 0;
+                failures = 0;
+                next = 0;
+            }
+            return;
+        }
+        if (state != State.CLOSED)
+            return;
+
+        if (calls == WINDOW_SIZE) {
+            if (outcomes[next])
+                --failures;
+        } else {
+            ++calls;
+        }
+        outcomes[next] = failed;
+        if (failed)
+            ++failures;
+        next = (next + 1) % WINDOW_SIZE;
+        if (calls >= MIN_CALLS && (double) failures / calls >= failureRateThreshold)
+            open();
+    }
+
+    private void open() {
+        log.warning("Circuit to YouTube opened, failure rate " + getFailureRate());
+        state = State.OPEN;
+        ++epoch;
+        openedAt = System.currentTimeMillis();
+        Metrics.increment("upstream.breaker.opened");
+    }
+
+    /**
+     * Releases the permit of a request which was cancelled before its outcome was known, letting the next request be
+     * the trial if it was the trial request
+     *
+     * @param permit The permit returned when the request was admitted
+     */
+    public synchronized void cancel(Permit permit) {
+        if (permit.epoch == epoch && permit.trial)
+            trialInFlight = false;
+    }
+
+    /**
+     * @return Seconds until the next trial request will be let through
+     */
+    public synchronized long getRetryAfterSeconds() {
+        if (state != State.OPEN)
+            return 1;
+        long remaining = openMillis - (System.currentTimeMillis() - openedAt);
+        return Math.max(1, (remaining + 999) / 1000);
+    }
+}
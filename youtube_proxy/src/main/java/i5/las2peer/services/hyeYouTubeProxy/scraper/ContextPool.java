@@ -0,0 +1,311 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.Cookie;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.IdentityChangeListener;
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.OwnerIdentity;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * ContextPool
+ *
+ * Keeps a bounded number of browser contexts with the cookies and headers of their owner already applied, so that
+ * consecutive requests made on behalf of the same user do not have to set up a new context every time.
+ * Idle contexts are evicted once they exceed the idle timeout or, if the pool is full, in least recently used order.
+ * Since Playwright objects are not thread-safe, a pool is only ever used by the browser worker owning its browser.
+ * The worker runs one job at a time, so whenever a context is checked out, all other contexts of the pool are idle.
+ */
+public class ContextPool implements IdentityChangeListener {
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+
+    private final Browser browser;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+
+    // Idle contexts grouped by owner, iterated in least recently used order
+    private final LinkedHashMap<String, ArrayDeque<PooledContext>> idle =
+            new LinkedHashMap<String, ArrayDeque<PooledContext>>(16, 0.75f, true);
+    // Contexts currently checked out
+    private final ArrayList<PooledContext> lent = new ArrayList<PooledContext>();
+    // Owners whose identity changed, may be added to from any thread and are purged by the worker
+    private final ConcurrentLinkedQueue<String> invalidated = new ConcurrentLinkedQueue<String>();
+    // Number of contexts currently opened by this pool (idle or checked out)
+    private volatile int size = 0;
+    // Number of contexts opened by this pool since it was created
+    private volatile int created = 0;
+
+    /**
+     * A browser context lent out by the pool
+     */
+    public static class PooledContext {
+        private final BrowserContext context;
+        private final String ownerId;
+        // Set if the owner's identity changed while the context was checked out
+        private boolean outdated = false;
+        private long lastUsed;
+
+        private PooledContext(BrowserContext context, String ownerId) {
+            this.context = context;
+            this.ownerId = ownerId;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        public BrowserContext getContext() {
+            return context;
+        }
+
+        public String getOwnerId() {
+            return ownerId;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param browser The browser in which contexts are created
+     * @param maxSize Maximum number of contexts opened at the same time
+     * @param idleTimeoutMillis Time after which an unused context is closed
+     */
+    public ContextPool(Browser browser, int maxSize, long idleTimeoutMillis) {
+        this.browser = browser;
+        this.maxSize = Math.max(1, maxSize);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Closes the idle contexts of all owners whose identity changed and marks their checked out contexts as outdated
+     *
+     * @param toClose List to which removed contexts are added
+     */
+    private void purgeInvalidated(List<PooledContext> toClose) {
+        String ownerId;
+        while ((ownerId = invalidated.poll()) != null) {
+            ArrayDeque<PooledContext> contexts = idle.remove(ownerId);
+            if (contexts != null)
+                toClose.addAll(contexts);
+            for (PooledContext pooled : lent) {
+                if (pooled.ownerId.equals(ownerId))
+                    pooled.outdated = true;
+            }
+        }
+    }
+
+    /**
+     * Removes all idle contexts which timed out or belong to an outdated identity
+     *
+     * @param toClose List to which removed contexts are added
+     */
+    private void evictStale(List<PooledContext> toClose) {
+        purgeInvalidated(toClose);
+        long now = System.currentTimeMillis();
+        Iterator<ArrayDeque<PooledContext>> it = idle.values().iterator();
+        while (it.hasNext()) {
+            ArrayDeque<PooledContext> contexts = it.next();
+            // Contexts are ordered from most to least recently used
+            while (!contexts.isEmpty() && now - contexts.peekLast().lastUsed > idleTimeoutMillis)
+                toClose.add(contexts.pollLast());
+            if (contexts.isEmpty())
+                it.remove();
+        }
+    }
+
+    /**
+     * Removes the least recently used idle context
+     *
+     * @param toClose List to which the removed context is added
+     * @return Whether there was an idle context to remove
+     */
+    private boolean evictLeastRecentlyUsed(List<PooledContext> toClose) {
+        Iterator<ArrayDeque<PooledContext>> it = idle.values().iterator();
+        if (!it.hasNext())
+            return false;
+        ArrayDeque<PooledContext> contexts = it.next();
+        toClose.add(contexts.pollLast());
+        if (contexts.isEmpty())
+            it.remove();
+        Metrics.increment("contextPool.evictions");
+        return true;
+    }
+
+    private void close(List<PooledContext> contexts) {
+        size -= contexts.size();
+        for (PooledContext pooled : contexts) {
+            try {
+                pooled.context.close();
+            } catch (Exception e) {
+                log.printStackTrace(e);
+            }
+        }
+    }
+
+    /**
+     * Adds the given cookies and headers to the given browser context
+     *
+     * @param context The browser context to set up
+     * @param identity The cookies and headers to apply
+     */
+    private void applyIdentity(BrowserContext context, OwnerIdentity identity) {
+        ArrayList<Cookie> cookies = identity.getCookies();
+        try {
+            context.addCookies(cookies);
+        } catch (Exception e) {
+            // A single malformed cookie rejects the whole list, so add the remaining ones individually
+            for (Cookie cookie : cookies) {
+                try {
+                    context.addCookies(Collections.singletonList(cookie));
+                } catch (Exception ex) {
+                    log.info("Skipping cookie " + cookie.name + ": " + ex.getMessage());
+                }
+            }
+        }
+        if (identity.getHeaders() != null)
+            context.setExtraHTTPHeaders(identity.getHeaders());
+    }
+
+    /**
+     * Lends out a browser context set up with the given identity, creating one if there is no idle context available
+     *
+     * @param identity The owner whose cookies and headers have to be set
+     * @return A browser context which has to be handed back via checkin() or discard()
+     * @throws ScrapeException If no context could be obtained
+     */
+    public PooledContext checkout(OwnerIdentity identity) throws ScrapeException {
+        String ownerId = identity.getOwnerId();
+        List<PooledContext> toClose = new ArrayList<PooledContext>();
+        PooledContext pooled = null;
+        try {
+            evictStale(toClose);
+            ArrayDeque<PooledContext> contexts = idle.get(ownerId);
+            if (contexts != null) {
+                pooled = contexts.pollFirst();
+                if (contexts.isEmpty())
+                    idle.remove(ownerId);
+            } else if (size - toClose.size() >= maxSize && !evictLeastRecentlyUsed(toClose)) {
+                throw new ScrapeException(503, "No browser context available.");
+            }
+        } finally {
+            close(toClose);
+        }
+
+        if (pooled != null) {
+            Metrics.increment("contextPool.hits");
+            lent.add(pooled);
+            return pooled;
+        }
+
+        Metrics.increment("contextPool.misses");
+        BrowserContext context = null;
+        try {
+            context = browser.newContext();
+            ++size;
+            ++created;
+            applyIdentity(context, identity);
+        } catch (Exception e) {
+            if (context != null)
+                close(Collections.singletonList(new PooledContext(context, ownerId)));
+            throw new ScrapeException(500, "Error setting request context.", e);
+        }
+        pooled = new PooledContext(context, ownerId);
+        lent.add(pooled);
+        return pooled;
+    }
+
+    /**
+     * Hands a browser context back to the pool after a successful request
+     *
+     * @param pooled The context obtained from checkout()
+     */
+    public void checkin(PooledContext pooled) {
+        if (pooled == null)
+            return;
+        try {
+            for (Page page : pooled.context.pages())
+                page.close();
+        } catch (Exception e) {
+            log.printStackTrace(e);
+            discard(pooled);
+            return;
+        }
+        List<PooledContext> toClose = new ArrayList<PooledContext>();
+        purgeInvalidated(toClose);
+        lent.remove(pooled);
+        if (pooled.outdated) {
+            toClose.add(pooled);
+        } else {
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.computeIfAbsent(pooled.ownerId, k -> new ArrayDeque<PooledContext>()).addFirst(pooled);
+        }
+        close(toClose);
+    }
+
+    /**
+     * Closes a browser context which should not be reused e.g., because the request using it failed
+     *
+     * @param pooled The context obtained from checkout()
+     */
+    public void discard(PooledContext pooled) {
+        if (pooled == null)
+            return;
+        lent.remove(pooled);
+        close(Collections.singletonList(pooled));
+    }
+
+    /**
+     * Closes idle contexts which timed out or belong to an outdated identity, called regularly by the browser worker
+     */
+    public void evictIdle() {
+        List<PooledContext> toClose = new ArrayList<PooledContext>();
+        evictStale(toClose);
+        close(toClose);
+    }
+
+    /**
+     * Marks all contexts of the given owner as outdated. This may be called from any thread, the contexts themselves
+     * are closed by the owning browser worker during its next checkout, checkin, or idle eviction.
+     *
+     * @param ownerId The las2peer ID of the user whose identity changed
+     */
+    public void invalidate(String ownerId) {
+        invalidated.add(ownerId);
+        Metrics.increment("contextPool.invalidations");
+    }
+
+    @Override
+    public void identityChanged(String ownerId) {
+        invalidate(ownerId);
+    }
+
+    /**
+     * @return Number of contexts currently opened by this pool
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Number of contexts opened by this pool since it was created
+     */
+    public int getCreatedCount() {
+        return created;
+    }
+
+    /**
+     * Closes all idle contexts
+     */
+    public void close() {
+        List<PooledContext> toClose = new ArrayList<PooledContext>();
+        for (ArrayDeque<PooledContext> contexts : idle.values())
+            toClose.addAll(contexts);
+        idle.clear();
+        close(toClose);
+    }
+}
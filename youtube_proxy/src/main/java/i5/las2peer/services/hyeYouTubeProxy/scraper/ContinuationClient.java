@@ -0,0 +1,350 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.OwnerIdentity;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Deadline;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+import i5.las2peer.services.hyeYouTubeProxy.parser.PageType;
+import i5.las2peer.services.hyeYouTubeProxy.parser.Recommendation;
+import i5.las2peer.services.hyeYouTubeProxy.parser.YouTubeParser;
+
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * ContinuationClient
+ *
+ * Pages through the main page feed and search results using plain HTTP requests. The first screen is read from the
+ * page's HTML, further items are requested from YouTube's internal API using the continuation token of the previous
+ * screen, just like the page does when scrolling down. The position in the list is handed to the client as an opaque
+ * cursor. A first screen which was not used up is kept for a while, so the rest of it can be returned without loading
+ * the page again, which may have changed in the meantime. The API key and client version are taken from the page and
+ * never from the cursor.
+ */
+public class ContinuationClient {
+
+    // Maximum number of continuation requests per call, bounds the work done for large limits
+    private static final int MAX_REQUESTS = 5;
+    private static final String DEFAULT_CLIENT_VERSION = "2.20211221.00.00";
+    // Number of partly returned first screens kept and time after which their cursors expire
+    private static final int MAX_STORED_SCREENS = 1000;
+    private static final long STORED_SCREEN_TTL_MILLIS = 600000;
+
+    private final HttpScraper httpScraper;
+    private final String baseUrl;
+    // Client configuration of the most recently loaded page
+    private volatile String apiKey = null;
+    private volatile String clientVersion = DEFAULT_CLIENT_VERSION;
+    private final LinkedHashMap<String, StoredScreen> storedScreens =
+            new LinkedHashMap<String, StoredScreen>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, StoredScreen> eldest) {
+                    return size() > MAX_STORED_SCREENS;
+                }
+            };
+
+    /**
+     * A screen of recommendations and the position following it
+     */
+    public static class Result {
+        private final ArrayList<Recommendation> recommendations;
+        private final String nextCursor;
+
+        public Result(ArrayList<Recommendation> recommendations, String nextCursor) {
+            this.recommendations = recommendations;
+            this.nextCursor = nextCursor;
+        }
+
+        public ArrayList<Recommendation> getRecommendations() {
+            return recommendations;
+        }
+
+        /**
+         * @return Cursor of the following recommendations, null if there are none
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * Position within the list of recommendations, token null refers to the first screen of the page, which is
+     * identified by screenId once it was partly returned
+     */
+    public static class Position {
+        private final PageType pageType;
+        private final String token;
+        private final int skip;
+        private final String screenId;
+
+        private Position(PageType pageType, String token, int skip, String screenId) {
+            this.pageType = pageType;
+            this.token = token;
+            this.skip = skip;
+            this.screenId = screenId;
+        }
+
+        /**
+         * @return Whether the position refers to the top of the page
+         */
+        public boolean isTop() {
+            return token == null && screenId == null;
+        }
+    }
+
+    /**
+     * A screen of recommendations as returned by YouTube
+     */
+    private static class Screen {
+        private final List<Recommendation> recommendations;
+        private final String continuation;
+
+        private Screen(List<Recommendation> recommendations, String continuation) {
+            this.recommendations = recommendations;
+            this.continuation = continuation;
+        }
+    }
+
+    /**
+     * A partly returned first screen along with the owner it was loaded for
+     */
+    private static class StoredScreen {
+        private final String ownerId;
+        private final Screen screen;
+        private final long expires;
+
+        private StoredScreen(String ownerId, Screen screen, long expires) {
+            this.ownerId = ownerId;
+            this.screen = screen;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param httpScraper Client used to send the requests with the owner's cookies and headers
+     * @param baseUrl YouTube's URL without trailing slash (e.g., https://www.youtube.com)
+     */
+    public ContinuationClient(HttpScraper httpScraper, String baseUrl) {
+        this.httpScraper = httpScraper;
+        this.baseUrl = baseUrl;
+    }
+
+    private static String encodeCursor(Position position) {
+        JsonObject cursor = new JsonObject();
+        cursor.addProperty("p", position.pageType.name());
+        cursor.addProperty("t", position.token);
+        cursor.addProperty("s", position.skip);
+        cursor.addProperty("f", position.screenId);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(cursor.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String getOptionalString(JsonObject obj, String key) {
+        return obj.has(key) && !obj.get(key).isJsonNull() ? obj.get(key).getAsString() : null;
+    }
+
+    /**
+     * Reads the position encoded in the given cursor, before any request is sent to YouTube
+     *
+     * @param pageType The page type the cursor is used for
+     * @param cursor Cursor returned by a previous call, or null to start at the top of the page
+     * @return Position referred to by the cursor
+     * @throws ScrapeException With status 400 if the cursor is malformed or belongs to another page type
+     */
+    public static Position decodeCursor(PageType pageType, String cursor) throws ScrapeException {
+        if (cursor == null)
+            return new Position(pageType, null, 0, null);
+        try {
+            JsonObject obj = JsonParser.parseString(
+                    new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)).getAsJsonObject();
+            if (PageType.fromName(obj.get("p").getAsString()) != pageType)
+                throw new IllegalArgumentException("Cursor does not belong to " + pageType);
+            Position position = new Position(pageType, getOptionalString(obj, "t"),
+                    Math.max(0, obj.get("s").getAsInt()), getOptionalString(obj, "f"));
+            // Only the rest of a stored first screen is continued without a token
+            if (position.token == null && position.screenId == null)
+                throw new IllegalArgumentException("Cursor refers to neither a token nor a stored screen");
+            return position;
+        } catch (Exception e) {
+            throw new ScrapeException(400, "Invalid cursor.", e);
+        }
+    }
+
+    /**
+     * Helper function keeping a partly returned first screen for its owner
+     *
+     * @param ownerId The las2peer ID of the owner the screen was loaded for
+     * @param screen The first screen
+     * @return ID of the stored screen
+     */
+    private String storeScreen(String ownerId, Screen screen) {
+        String screenId = UUID.randomUUID().toString();
+        synchronized (storedScreens) {
+            storedScreens.put(screenId, new StoredScreen(ownerId, screen,
+                    System.currentTimeMillis() + STORED_SCREEN_TTL_MILLIS));
+        }
+        return screenId;
+    }
+
+    /**
+     * Helper function looking up a partly returned first screen
+     *
+     * @param ownerId The las2peer ID of the owner requesting the screen
+     * @param screenId ID of the stored screen
+     * @return The stored screen, or null if it expired or was loaded for another owner
+     */
+    private Screen getStoredScreen(String ownerId, String screenId) {
+        synchronized (storedScreens) {
+            StoredScreen stored = storedScreens.get(screenId);
+            if (stored == null || !stored.ownerId.equals(ownerId))
+                return null;
+            if (stored.expires <= System.currentTimeMillis()) {
+                storedScreens.remove(screenId);
+                return null;
+            }
+            return stored.screen;
+        }
+    }
+
+    /**
+     * Helper function requesting the first screen of the given page
+     *
+     * @param identity The owner whose cookies and headers are used
+     * @param pageType The page type
+     * @param pageUrl URL of the page
+     * @param deadline Deadline of the request, the HTTP request times out once it expires
+     * @return Future of the first screen
+     */
+    private CompletableFuture<Screen> fetchFirst(OwnerIdentity identity, PageType pageType, String pageUrl,
+                                                 Deadline deadline) {
+        return httpScraper.fetch(identity, pageUrl, deadline.getRemainingMillis()).thenApply(html -> {
+            JsonObject renderer = YouTubeParser.getRenderer(pageType, html);
+            if (renderer == null)
+                return new Screen(new ArrayList<Recommendation>(), null);
+            // The configuration is the same for every owner, continuations use the one seen most recently
+            String pageApiKey = YouTubeParser.getConfigValue(html, "INNERTUBE_API_KEY");
+            String pageClientVersion = YouTubeParser.getConfigValue(html, "INNERTUBE_CLIENT_VERSION");
+            if (pageApiKey != null)
+                apiKey = pageApiKey;
+            if (pageClientVersion != null)
+                clientVersion = pageClientVersion;
+            return new Screen(YouTubeParser.parseInitialData(pageType, renderer),
+                    YouTubeParser.getContinuationToken(pageType, renderer));
+        });
+    }
+
+    /**
+     * Helper function requesting the screen identified by the given continuation token
+     *
+     * @param identity The owner whose cookies and headers are used
+     * @param position Position holding the continuation token
+     * @param deadline Deadline of the request, the HTTP request times out once it expires
+     * @return Future of the requested screen
+     */
+    private CompletableFuture<Screen> fetchNext(OwnerIdentity identity, Position position, Deadline deadline) {
+        String apiKey = this.apiKey;
+        String clientVersion = this.clientVersion;
+        JsonObject client = new JsonObject();
+        client.addProperty("clientName", "WEB");
+        client.addProperty("clientVersion", clientVersion);
+        JsonObject context = new JsonObject();
+        context.add("client", client);
+        JsonObject body = new JsonObject();
+        body.add("context", context);
+        body.addProperty("continuation", position.token);
+
+        String url = baseUrl + YouTubeParser.getApiPath(position.pageType) +
+                (apiKey != null ? "?key=" + URLEncoder.encode(apiKey, StandardCharsets.UTF_8) : "");
+        HttpRequest.Builder request = httpScraper.newRequest(identity, url)
+                .setHeader("Content-Type", "application/json")
+                .setHeader("X-YouTube-Client-Name", "1")
+                .setHeader("X-YouTube-Client-Version", clientVersion)
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+        Metrics.increment("continuation.requests");
+        return httpScraper.send(request, body.toString(), deadline.getRemainingMillis()).thenApply(json -> {
+            JsonObject response = JsonParser.parseString(json).getAsJsonObject();
+            return new Screen(YouTubeParser.parseApiResponse(position.pageType, response),
+                    YouTubeParser.getApiContinuationToken(response));
+        });
+    }
+
+    /**
+     * Requests up to the given number of recommendations starting at the given cursor
+     *
+     * @param identity The owner whose cookies and headers are used
+     * @param pageUrl URL of the page, used if starting at the top of the page
+     * @param limit Maximum number of recommendations to return
+     * @param start Position decoded from the cursor returned by a previous call
+     * @param deadline Deadline of the request, no further requests are sent to YouTube once it expires
+     * @return Future of the recommendations and the cursor of the following ones, failed with status 410 if the rest
+     * of the first screen is no longer available
+     */
+    public CompletableFuture<Result> fetch(OwnerIdentity identity, String pageUrl, int limit, Position start,
+                                           Deadline deadline) {
+        CompletableFuture<Screen> screen;
+        if (start.token != null) {
+            screen = fetchNext(identity, start, deadline);
+        } else if (start.screenId != null) {
+            Screen stored = getStoredScreen(identity.getOwnerId(), start.screenId);
+            if (stored == null) {
+                Metrics.increment("continuation.expired");
+                return CompletableFuture.failedFuture(
+                        new ScrapeException(410, "Cursor expired, please start at the top of the page again."));
+            }
+            screen = CompletableFuture.completedFuture(stored);
+        } else {
+            screen = fetchFirst(identity, start.pageType, pageUrl, deadline);
+        }
+        return screen.thenCompose(first -> collect(identity, start, first, Math.max(1, limit),
+                new ArrayList<Recommendation>(), 0, deadline));
+    }
+
+    /**
+     * Helper function adding the recommendations of the given screen and requesting further screens until the limit
+     * is reached
+     *
+     * @param identity The owner whose cookies and headers are used
+     * @param position Position of the given screen
+     * @param screen The screen read at the given position
+     * @param limit Maximum number of recommendations to return
+     * @param results Recommendations collected so far
+     * @param requests Number of continuation requests sent so far
+     * @param deadline Deadline of the request
+     * @return Future of the collected recommendations and the cursor of the following ones
+     */
+    private CompletableFuture<Result> collect(OwnerIdentity identity, Position position, Screen screen, int limit,
+                                              ArrayList<Recommendation> results, int requests, Deadline deadline) {
+        List<Recommendation> items = screen.recommendations;
+        int from = Math.min(position.skip, items.size());
+        int take = Math.min(limit - results.size(), items.size() - from);
+        results.addAll(items.subList(from, from + take));
+
+        // Continue within this screen next time if it was not used up, the first screen cannot be requested again
+        if (from + take < items.size()) {
+            String screenId = position.screenId;
+            if (position.token == null && screenId == null)
+                screenId = storeScreen(identity.getOwnerId(), screen);
+            return CompletableFuture.completedFuture(new Result(results, encodeCursor(
+                    new Position(position.pageType, position.token, from + take, screenId))));
+        }
+        if (screen.continuation == null)
+            return CompletableFuture.completedFuture(new Result(results, null));
+        Position next = new Position(position.pageType, screen.continuation, 0, null);
+        if (results.size() >= limit || requests >= MAX_REQUESTS)
+            return CompletableFuture.completedFuture(new Result(results, encodeCursor(next)));
+        return fetchNext(identity, next, deadline).thenCompose(following ->
+                collect(identity, next, following, limit, results, requests + 1, deadline));
+    }
+}
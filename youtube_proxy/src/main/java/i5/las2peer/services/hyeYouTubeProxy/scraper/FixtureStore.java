@@ -0,0 +1,167 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * FixtureStore
+ *
+ * Directory of recorded YouTube responses. Responses are stored under a key derived from the request's method, path,
+ * query, and continuation token (or body), but not its host, so responses recorded from YouTube can be served by the
+ * ReplayServer on any address.
+ */
+public class FixtureStore {
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+    private static final int MAX_SLUG_LENGTH = 40;
+
+    private final Path directory;
+
+    /**
+     * A recorded response
+     */
+    public static class Fixture {
+        private final String contentType;
+        private final byte[] body;
+
+        private Fixture(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param directory Directory the fixtures are read from and recorded to, created if missing
+     */
+    public FixtureStore(String directory) {
+        this.directory = Paths.get(directory);
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            log.printStackTrace(e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Builds the file name a response is stored under
+     *
+     * @param method HTTP method of the request
+     * @param pathAndQuery Path and query of the request, e.g., /watch?v=abc
+     * @param body Body of the request, may be null
+     * @return File name without extension, e.g., GET-watch-1a2b3c4d5e6f
+     */
+    public static String getKey(String method, String pathAndQuery, String body) {
+        // Requests to YouTube's internal API carry changing client details, only the continuation identifies them
+        String identifying = body;
+        if (body != null && !body.isEmpty()) {
+            try {
+                JsonElement continuation = JsonParser.parseString(body).getAsJsonObject().get("continuation");
+                if (continuation != null)
+                    identifying = continuation.getAsString();
+            } catch (Exception e) {
+                // Not a Json request, the whole body identifies it
+            }
+        }
+        String path = pathAndQuery.split("\\?", 2)[0];
+        String slug = path.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "");
+        if (slug.length() > MAX_SLUG_LENGTH)
+            slug = slug.substring(0, MAX_SLUG_LENGTH);
+        if (slug.isEmpty())
+            slug = "root";
+        return method.toUpperCase() + "-" + slug + "-" +
+                hash(method.toUpperCase() + " " + pathAndQuery + "\n" + (identifying == null ? "" : identifying));
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 6; ++i)
+                hex.append(String.format("%02x", digest[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getPathAndQuery(String url) {
+        URI uri = URI.create(url);
+        String pathAndQuery = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null)
+            pathAndQuery += "?" + uri.getRawQuery();
+        return pathAndQuery;
+    }
+
+    /**
+     * Records the given response, replacing an earlier recording of the same request
+     *
+     * @param method HTTP method of the request
+     * @param url URL of the request
+     * @param requestBody Body of the request, may be null
+     * @param responseBody Body of YouTube's response
+     */
+    public void record(String method, String url, String requestBody, String responseBody) {
+        String extension = responseBody.stripLeading().startsWith("{") ? ".json" : ".html";
+        Path file = directory.resolve(getKey(method, getPathAndQuery(url), requestBody) + extension);
+        try {
+            // Write to a temporary file first, so the replay server never serves a partially written fixture
+            Path temp = Files.createTempFile(directory, "fixture", ".tmp");
+            Files.writeString(temp, responseBody, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Metrics.increment("fixtures.recorded");
+        } catch (IOException e) {
+            log.printStackTrace(e);
+        }
+    }
+
+    /**
+     * Looks up the recorded response to the given request
+     *
+     * @param method HTTP method of the request
+     * @param pathAndQuery Path and query of the request
+     * @param body Body of the request, may be null
+     * @return The recorded response, or null if the request was not recorded
+     */
+    public Fixture find(String method, String pathAndQuery, String body) {
+        String key = getKey(method, pathAndQuery, body);
+        try {
+            Path json = directory.resolve(key + ".json");
+            if (Files.exists(json))
+                return new Fixture("application/json; charset=utf-8", Files.readAllBytes(json));
+            Path html = directory.resolve(key + ".html");
+            if (Files.exists(html))
+                return new Fixture("text/html; charset=utf-8", Files.readAllBytes(html));
+        } catch (IOException e) {
+            log.printStackTrace(e);
+        }
+        return null;
+    }
+}
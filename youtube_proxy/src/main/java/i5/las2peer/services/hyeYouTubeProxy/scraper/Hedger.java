@@ -0,0 +1,191 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedger
+ *
+ * Starts a second attempt of a scrape which takes longer than a given percentile of the recent scrape latencies. The
+ * first attempt to succeed wins, the other one is abandoned. Since hedges add load on YouTube and the browsers, only a
+ * given share of all scrapes may be hedged.
+ */
+public class Hedger {
+
+    // Number of recent latencies the percentile is computed from, and the number required before hedging
+    private static final int WINDOW_SIZE = 200;
+    private static final int MIN_SAMPLES = 20;
+
+    private final double percentile;
+    private final double budget;
+    private final long[] latencies = new long[WINDOW_SIZE];
+    private int samples = 0;
+    private int next = 0;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    // Starts the hedges, the timers of attempts finishing in time are removed right away
+    private final ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "hye-hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A single attempt of the hedged work
+     *
+     * @param <T> Type of the result
+     */
+    @FunctionalInterface
+    public interface Attempt<T> {
+
+        /**
+         * Starts the attempt
+         *
+         * @param hedge Whether this is the second attempt started because the first one is late
+         * @param abandoned Completed once the result of this attempt is no longer needed, work still in progress
+         * should be cancelled then
+         * @return Future of the attempt's result
+         */
+        CompletableFuture<T> start(boolean hedge, CompletableFuture<Void> abandoned);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param percentile Percentile of recent latencies (between 0 and 100) after which a hedge is started, 0 disables
+     * hedging
+     * @param budgetPercent Maximum share of scrapes (in percent) which may be hedged
+     */
+    public Hedger(double percentile, double budgetPercent) {
+        this.percentile = Math.min(100, Math.max(0, percentile));
+        this.budget = Math.max(0, budgetPercent) / 100;
+        timers.setRemoveOnCancelPolicy(true);
+        Metrics.registerGauge("hedge.delayMs", () -> getDelayMillis());
+        Metrics.registerGauge("hedge.winRate", () -> Metrics.ratio("hedge.wins", "hedge.losses"));
+    }
+
+    public boolean isEnabled() {
+        return percentile > 0;
+    }
+
+    private synchronized void recordLatency(long millis) {
+        latencies[next] = millis;
+        next = (next + 1) % WINDOW_SIZE;
+        samples = Math.min(WINDOW_SIZE, samples + 1);
+    }
+
+    /**
+     * @return Time after which a hedge is started, or -1 if there are too few samples yet
+     */
+    public synchronized long getDelayMillis() {
+        if (samples < MIN_SAMPLES)
+            return -1;
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * samples) - 1;
+        return sorted[Math.max(0, Math.min(samples - 1, index))];
+    }
+
+    // Takes a share of the hedge budget if it is not used up
+    private boolean tryAcquireBudget() {
+        long allowed = (long) Math.max(1, requests.get() * budget);
+        long used = hedges.get();
+        return used < allowed && hedges.compareAndSet(used, used + 1);
+    }
+
+    /**
+     * Runs the given work, starting a second attempt if the first one takes longer than usual
+     *
+     * @param attempt Starts one attempt of the work
+     * @param <T> Type of the result
+     * @return Future of the result of the first successful attempt, or the error of the first attempt if both fail
+     */
+    public <T> CompletableFuture<T> execute(Attempt<T> attempt) {
+        CompletableFuture<Void> primaryAbandoned = new CompletableFuture<Void>();
+        long primaryStart = System.nanoTime();
+        CompletableFuture<T> primary = start(attempt, false, primaryAbandoned);
+        primary.thenRun(() -> recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - primaryStart)));
+        if (!isEnabled())
+            return primary;
+        requests.incrementAndGet();
+        long delay = getDelayMillis();
+        if (delay < 0)
+            return primary;
+
+        CompletableFuture<T> result = new CompletableFuture<T>();
+        AtomicBoolean hedged = new AtomicBoolean(false);
+        CompletableFuture<Void> hedgeAbandoned = new CompletableFuture<Void>();
+        CompletableFuture<T> hedgeStarted = new CompletableFuture<T>();
+
+        ScheduledFuture<?> timer = timers.schedule(() -> {
+            if (primary.isDone())
+                return;
+            if (!tryAcquireBudget()) {
+                Metrics.increment("hedge.skipped.budget");
+                return;
+            }
+            hedged.set(true);
+            Metrics.increment("hedge.started");
+            long hedgeStart = System.nanoTime();
+            start(attempt, true, hedgeAbandoned).whenComplete((value, error) -> {
+                if (error == null) {
+                    recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - hedgeStart));
+                    if (result.complete(value)) {
+                        primaryAbandoned.complete(null);
+                        Metrics.increment("hedge.wins");
+                    }
+                    hedgeStarted.complete(value);
+                } else {
+                    Metrics.increment("hedge.failed");
+                    hedgeStarted.completeExceptionally(error);
+                    // Report the first attempt's error if it has already failed as well
+                    if (primary.isCompletedExceptionally())
+                        primary.exceptionally(primaryError -> {
+                            result.completeExceptionally(primaryError);
+                            return null;
+                        });
+                }
+            });
+        }, delay, TimeUnit.MILLISECONDS);
+
+        primary.whenComplete((value, error) -> {
+            // No hedge is needed once the first attempt finished, whether it succeeded or failed
+            timer.cancel(false);
+            if (error == null) {
+                if (result.complete(value)) {
+                    hedgeAbandoned.complete(null);
+                    if (hedged.get())
+                        Metrics.increment("hedge.losses");
+                }
+            } else if (!hedged.get() || hedgeStarted.isCompletedExceptionally()) {
+                result.completeExceptionally(error);
+            }
+        });
+
+        // A caller no longer interested in the result abandons both attempts
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                timer.cancel(false);
+                primaryAbandoned.complete(null);
+                hedgeAbandoned.complete(null);
+            }
+        });
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> start(Attempt<T> attempt, boolean hedge,
+                                                  CompletableFuture<Void> abandoned) {
+        try {
+            return attempt.start(hedge, abandoned);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.microsoft.playwright.options.Cookie;
+
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.OwnerIdentity;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * HttpScraper
+ *
+ * Requests YouTube pages without a browser. YouTube renders the recommendations into the ytInitialData object
+ * embedded in the HTML response on the server, so for most pages a plain HTTP request carrying the owner's cookies
+ * and headers already contains everything the parser needs.
+ */
+public class HttpScraper {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    // Desktop browser user agent, YouTube serves a different (mobile or legacy) layout to unknown clients
+    private static final String DEFAULT_USER_AGENT = "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 " +
+            "(KHTML, like Gecko) Chrome/96.0.4664.110 Safari/537.36";
+    // Headers which are managed by the HTTP client itself, or would require decoding the response body
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "cookie", "expect",
+            "host", "upgrade", "accept-encoding");
+
+    // Shared client, reusing its connections (and HTTP/2 streams) across requests
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+    private final FixtureStore recorder;
+
+    public HttpScraper() {
+        this(null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param recorder Store all successful responses are recorded to for later replay, null to not record them
+     */
+    public HttpScraper(FixtureStore recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Builds the value of a Cookie header from the given cookies
+     *
+     * @param identity The owner whose cookies are sent
+     * @return Cookies formatted as name=value pairs separated by semicolons
+     */
+    private static String getCookieHeader(OwnerIdentity identity) {
+        StringBuilder cookieString = new StringBuilder();
+        for (Cookie cookie : identity.getCookies()) {
+            if (cookieString.length() > 0)
+                cookieString.append("; ");
+            cookieString.append(cookie.name).append('=').append(cookie.value);
+        }
+        return cookieString.toString();
+    }
+
+    /**
+     * Builds a request for the given URL carrying the given owner's cookies and headers
+     *
+     * @param identity The owner on whose behalf the request is made
+     * @param url The YouTube page to request
+     * @return Request builder which may be amended before sending
+     */
+    public HttpRequest.Builder newRequest(OwnerIdentity identity, String url) {
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .setHeader("Cookie", getCookieHeader(identity));
+        boolean hasUserAgent = false;
+        if (identity.getHeaders() != null) {
+            for (Map.Entry<String, String> header : identity.getHeaders().entrySet()) {
+                String name = header.getKey().toLowerCase();
+                if (RESTRICTED_HEADERS.contains(name) || name.startsWith(":"))
+                    continue;
+                try {
+                    requestBuilder.setHeader(header.getKey(), header.getValue());
+                    hasUserAgent |= name.equals("user-agent");
+                } catch (IllegalArgumentException e) {
+                    // Header not allowed by HTTP client, skip it
+                }
+            }
+        }
+        if (!hasUserAgent)
+            requestBuilder.setHeader("User-Agent", DEFAULT_USER_AGENT);
+        return requestBuilder;
+    }
+
+    /**
+     * Requests the given YouTube page on behalf of the given owner
+     *
+     * @param identity The owner whose cookies and headers are sent along with the request
+     * @param url The YouTube page to request
+     * @return Future completed with the HTML of the page, or exceptionally if YouTube did not respond with 200
+     */
+    public CompletableFuture<String> fetch(OwnerIdentity identity, String url) {
+        return send(newRequest(identity, url).GET().build());
+    }
+
+    /**
+     * Requests the given YouTube page on behalf of the given owner, giving up after the given time
+     *
+     * @param identity The owner whose cookies and headers are sent along with the request
+     * @param url The YouTube page to request
+     * @param timeoutMillis Time left for the request, the usual request timeout applies if it is longer
+     * @return Future completed with the HTML of the page, or exceptionally if YouTube did not respond with 200 in time
+     */
+    public CompletableFuture<String> fetch(OwnerIdentity identity, String url, long timeoutMillis) {
+        return send(newRequest(identity, url).GET(), null, timeoutMillis);
+    }
+
+    /**
+     * Sends the given request, giving up after the given time
+     *
+     * @param request Builder of the request to YouTube, usually obtained from newRequest()
+     * @param body The body of the request, only needed to record the response
+     * @param timeoutMillis Time left for the request, the usual request timeout applies if it is longer
+     * @return Future completed with the response body, or exceptionally if YouTube did not respond with 200 in time
+     */
+    public CompletableFuture<String> send(HttpRequest.Builder request, String body, long timeoutMillis) {
+        if (timeoutMillis <= 0)
+            return CompletableFuture.failedFuture(new ScrapeException(504, "Request timed out."));
+        Duration timeout = Duration.ofMillis(Math.min(REQUEST_TIMEOUT.toMillis(), timeoutMillis));
+        return send(request.timeout(timeout).build(), body);
+    }
+
+    /**
+     * Sends the given request, usually built using newRequest()
+     *
+     * @param request The request to YouTube
+     * @return Future completed with the response body, or exceptionally if YouTube did not respond with 200
+     */
+    public CompletableFuture<String> send(HttpRequest request) {
+        return send(request, null);
+    }
+
+    /**
+     * Sends the given request, usually built using newRequest()
+     *
+     * @param request The request to YouTube
+     * @param body The body of the request, only needed to record the response
+     * @return Future completed with the response body, or exceptionally if YouTube did not respond with 200
+     */
+    public CompletableFuture<String> send(HttpRequest request, String body) {
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    Metrics.recordTime("httpScraper.fetch", System.nanoTime() - start);
+                    if (response.statusCode() != 200) {
+                        Metrics.increment("httpScraper.errors");
+                        throw new CompletionException(new ScrapeException(500,
+                                "YouTube responded with status " + response.statusCode()));
+                    }
+                    if (recorder != null)
+                        recorder.record(request.method(), request.uri().toString(), body, response.body());
+                    return response.body();
+                });
+    }
+}
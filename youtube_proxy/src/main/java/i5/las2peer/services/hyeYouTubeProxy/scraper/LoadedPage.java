@@ -0,0 +1,48 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+/**
+ * LoadedPage
+ *
+ * Data handed from a browser worker to the parser: a response of YouTube's internal API intercepted while loading the
+ * page, the relevant part of the page's ytInitialData serialized as Json, or the HTML of the whole page if the data
+ * could not be read directly.
+ */
+public class LoadedPage {
+
+    public enum Source {
+        // Json body of a /youtubei/v1/... response
+        API_RESPONSE,
+        // Renderer object read from ytInitialData.contents
+        INITIAL_DATA,
+        // HTML of the rendered page
+        HTML
+    }
+
+    private final Source source;
+    private final String data;
+
+    private LoadedPage(Source source, String data) {
+        this.source = source;
+        this.data = data;
+    }
+
+    public static LoadedPage fromApiResponse(String json) {
+        return new LoadedPage(Source.API_RESPONSE, json);
+    }
+
+    public static LoadedPage fromInitialData(String json) {
+        return new LoadedPage(Source.INITIAL_DATA, json);
+    }
+
+    public static LoadedPage fromHtml(String html) {
+        return new LoadedPage(Source.HTML, html);
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public String getData() {
+        return data;
+    }
+}
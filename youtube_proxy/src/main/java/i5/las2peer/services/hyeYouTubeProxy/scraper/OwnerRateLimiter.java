@@ -0,0 +1,194 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OwnerRateLimiter
+ *
+ * Token bucket per cookie owner limiting how many pages are requested from YouTube with the same account. Requests
+ * exceeding an owner's rate reserve one of the following tokens and wait for it, as long as the wait does not exceed
+ * the configured maximum. Since every reservation takes the next free token, waiting requests are admitted in the
+ * order they arrived. Buckets which have filled up again are removed from time to time, since they behave just like
+ * the new bucket created on the owner's next request.
+ */
+public class OwnerRateLimiter {
+
+    private static final long EVICTION_INTERVAL_MILLIS = 60000;
+
+    private final double tokensPerMilli;
+    private final double burst;
+    private final long maxWaitMillis;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Available tokens of one owner, negative if tokens are already reserved by waiting requests
+     */
+    private static class Bucket {
+        private double tokens;
+        private long updated;
+        // Set once the bucket was removed, its tokens must not be taken anymore
+        private boolean evicted = false;
+
+        private Bucket(double tokens, long updated) {
+            this.tokens = tokens;
+            this.updated = updated;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param ratePerMinute Number of pages per owner and minute in the long run, 0 disables rate limiting
+     * @param burst Number of pages which may be requested at once after an owner's account was idle
+     * @param maxWaitMillis Maximum time a request waits for a token of its owner
+     */
+    public OwnerRateLimiter(int ratePerMinute, int burst, long maxWaitMillis) {
+        this.tokensPerMilli = Math.max(0, ratePerMinute) / 60000.0;
+        this.burst = Math.max(1, burst);
+        this.maxWaitMillis = Math.max(0, maxWaitMillis);
+        Metrics.registerGauge("rateLimit.queueDepth", waiting::get);
+        Metrics.registerGauge("rateLimit.owners", buckets::size);
+    }
+
+    public boolean isEnabled() {
+        return tokensPerMilli > 0;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    private Bucket getBucket(String ownerId) {
+        evictIdle();
+        return buckets.computeIfAbsent(ownerId, id -> new Bucket(burst, System.currentTimeMillis()));
+    }
+
+    /**
+     * Helper function removing the buckets of owners who have not requested any page for long enough to get all of
+     * their tokens back, at most once per eviction interval
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        long last = lastEviction.get();
+        if (now - last < EVICTION_INTERVAL_MILLIS || !lastEviction.compareAndSet(last, now))
+            return;
+        buckets.forEach((ownerId, bucket) -> {
+            synchronized (bucket) {
+                refill(bucket, now);
+                if (bucket.tokens < burst)
+                    return;
+                bucket.evicted = true;
+            }
+            buckets.remove(ownerId, bucket);
+        });
+    }
+
+    // Adds the tokens accumulated since the last update, must hold the bucket's lock
+    private void refill(Bucket bucket, long now) {
+        bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updated) * tokensPerMilli);
+        bucket.updated = now;
+    }
+
+    // Time until the next free token of the bucket is available, must hold the bucket's lock
+    private long getWait(Bucket bucket) {
+        return bucket.tokens >= 1 ? 0 : (long) Math.ceil((1 - bucket.tokens) / tokensPerMilli);
+    }
+
+    /**
+     * Estimates how long a request for the given owner would have to wait, without reserving a token
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @return Time in milliseconds until the owner's next free token is available
+     */
+    public long peekWait(String ownerId) {
+        if (!isEnabled())
+            return 0;
+        while (true) {
+            Bucket bucket = getBucket(ownerId);
+            synchronized (bucket) {
+                if (bucket.evicted)
+                    continue;
+                refill(bucket, System.currentTimeMillis());
+                return getWait(bucket);
+            }
+        }
+    }
+
+    /**
+     * Reserves the next free token of the given owner if it is available within the maximum wait
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @return Time in milliseconds to wait before requesting the page, or -1 if no token was reserved
+     */
+    public long reserve(String ownerId) {
+        return reserve(ownerId, maxWaitMillis);
+    }
+
+    /**
+     * Reserves the next free token of the given owner if it is available within the given time
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @param maxWait Maximum time in milliseconds the caller is willing to wait
+     * @return Time in milliseconds to wait before requesting the page, or -1 if no token was reserved
+     */
+    public long reserve(String ownerId, long maxWait) {
+        if (!isEnabled())
+            return 0;
+        long wait = -1;
+        while (wait < 0) {
+            Bucket bucket = getBucket(ownerId);
+            synchronized (bucket) {
+                // Another thread removed the bucket after it was looked up, take the token from its replacement
+                if (bucket.evicted)
+                    continue;
+                refill(bucket, System.currentTimeMillis());
+                wait = getWait(bucket);
+                if (wait <= maxWait)
+                    bucket.tokens -= 1;
+            }
+        }
+        if (wait > maxWait) {
+            Metrics.increment("rateLimit.throttled");
+            return -1;
+        }
+        return wait;
+    }
+
+    /**
+     * Takes a token of the given owner only if it is available right away, e.g., for speculative requests
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @return Whether a token was taken
+     */
+    public boolean tryAcquire(String ownerId) {
+        return reserve(ownerId, 0) == 0;
+    }
+
+    /**
+     * Waits for a token reserved before
+     *
+     * @param waitMillis Time returned when reserving the token
+     * @return Future completed once the reserved token is available
+     */
+    public CompletableFuture<Void> await(long waitMillis) {
+        if (waitMillis <= 0) {
+            Metrics.increment("rateLimit.admitted");
+            return CompletableFuture.completedFuture(null);
+        }
+        Metrics.increment("rateLimit.queued");
+        Metrics.recordTime("rateLimit.wait", TimeUnit.MILLISECONDS.toNanos(waitMillis));
+        waiting.incrementAndGet();
+        return CompletableFuture.runAsync(() -> {
+            waiting.decrementAndGet();
+            Metrics.increment("rateLimit.admitted");
+        }, CompletableFuture.delayedExecutor(waitMillis, TimeUnit.MILLISECONDS));
+    }
+}
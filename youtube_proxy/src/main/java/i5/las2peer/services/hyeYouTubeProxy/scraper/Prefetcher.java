@@ -0,0 +1,150 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.OwnerIdentity;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+import i5.las2peer.services.hyeYouTubeProxy.lib.ParserUtil;
+import i5.las2peer.services.hyeYouTubeProxy.parser.Recommendation;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Prefetcher
+ *
+ * Speculatively scrapes the watch pages of the top recommendations returned for a video, so the recommendations are
+ * already cached when the user clicks on one of them. Prefetches only start while no page requests are waiting for a
+ * browser worker, and are limited by a global number of concurrent prefetches and a number of prefetches per owner
+ * and minute. Prefetches also count against the owner's rate limit, but never wait for it. Their browser jobs are
+ * queued behind all other jobs.
+ */
+public class Prefetcher {
+
+    private static final long RATE_WINDOW_MILLIS = 60000;
+
+    private final int count;
+    private final int ratePerMinute;
+    private final Semaphore budget;
+    private final IntSupplier queueDepth;
+    private final OwnerRateLimiter ownerRateLimiter;
+    // Start of the current rate limiting window and number of prefetches started in it per owner
+    private final ConcurrentHashMap<String, long[]> ownerWindows = new ConcurrentHashMap<String, long[]>();
+
+    /**
+     * Constructor
+     *
+     * @param count Number of top recommendations to prefetch, 0 disables prefetching
+     * @param maxInFlight Maximum number of prefetches running at the same time
+     * @param ratePerMinute Maximum number of prefetches per owner and minute
+     * @param queueDepth Supplies the number of page requests currently waiting for a browser worker
+     * @param ownerRateLimiter Rate limit of the requests sent to YouTube per owner
+     */
+    public Prefetcher(int count, int maxInFlight, int ratePerMinute, IntSupplier queueDepth,
+                      OwnerRateLimiter ownerRateLimiter) {
+        this.count = count;
+        this.ratePerMinute = ratePerMinute;
+        this.budget = new Semaphore(Math.max(1, maxInFlight));
+        this.queueDepth = queueDepth;
+        this.ownerRateLimiter = ownerRateLimiter;
+        Metrics.registerGauge("prefetch.hitRatio", () -> {
+            long completed = Metrics.getCount("prefetch.completed");
+            return completed > 0 ? (double) Metrics.getCount("prefetch.hits") / completed : 0;
+        });
+    }
+
+    public boolean isEnabled() {
+        return count > 0;
+    }
+
+    /**
+     * Helper function counting a prefetch against the owner's prefetch and request rate limits, the prefetch is only
+     * counted against either limit if both permit it
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @return Whether both rate limits permit another prefetch
+     */
+    private boolean tryAcquireRate(String ownerId) {
+        long now = System.currentTimeMillis();
+        long[] window = ownerWindows.compute(ownerId, (id, w) -> {
+            if (w == null || now - w[0] >= RATE_WINDOW_MILLIS)
+                return new long[] { now, 0 };
+            return w;
+        });
+        synchronized (window) {
+            if (window[1] >= ratePerMinute) {
+                Metrics.increment("prefetch.skipped.rateLimit");
+                return false;
+            }
+            if (!ownerRateLimiter.tryAcquire(ownerId)) {
+                Metrics.increment("prefetch.skipped.ownerRateLimit");
+                return false;
+            }
+            ++window[1];
+            return true;
+        }
+    }
+
+    /**
+     * Starts prefetching the watch pages of the top recommendations in the background
+     *
+     * @param identity The owner for whom the recommendations were obtained
+     * @param recommendations The recommendations returned to the user
+     * @param cached Tells whether the watch page of the given video ID is already cached for the owner
+     * @param load Scrapes and caches the watch page of the given video ID for the owner, completes with false if the
+     * page was not scraped by this prefetch (e.g., because it was cached in the meantime)
+     */
+    public void prefetch(OwnerIdentity identity, List<Recommendation> recommendations, Predicate<String> cached,
+                         Function<String, CompletableFuture<Boolean>> load) {
+        if (!isEnabled())
+            return;
+        LinkedHashSet<String> videoIds = new LinkedHashSet<String>();
+        for (Recommendation rec : recommendations) {
+            if (videoIds.size() >= count)
+                break;
+            String videoId = ParserUtil.getVideoId(rec.getLink());
+            if (videoId != null)
+                videoIds.add(videoId);
+        }
+
+        for (String videoId : videoIds) {
+            if (cached.test(videoId)) {
+                Metrics.increment("prefetch.skipped.cached");
+                continue;
+            }
+            // Never compete with actual requests for browser workers
+            if (queueDepth.getAsInt() > 0) {
+                Metrics.increment("prefetch.skipped.busy");
+                return;
+            }
+            if (!budget.tryAcquire()) {
+                Metrics.increment("prefetch.skipped.budget");
+                return;
+            }
+            if (!tryAcquireRate(identity.getOwnerId())) {
+                budget.release();
+                return;
+            }
+            Metrics.increment("prefetch.started");
+            CompletableFuture<Boolean> future;
+            try {
+                future = load.apply(videoId);
+            } catch (Exception e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((scraped, error) -> {
+                budget.release();
+                if (error != null)
+                    Metrics.increment("prefetch.failed");
+                else if (scraped)
+                    Metrics.increment("prefetch.completed");
+                else
+                    Metrics.increment("prefetch.skipped.cached");
+            });
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.IdentityChangeListener;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+import i5.las2peer.services.hyeYouTubeProxy.parser.PageType;
+import i5.las2peer.services.hyeYouTubeProxy.parser.Recommendation;
+
+import java.util.*;
+
+/**
+ * RecommendationCache
+ *
+ * Size-bounded in-memory cache of parsed recommendations, keyed by cookie owner, page type, and the requested video
+ * ID or search query. Entries expire after the time to live configured for their page type and are removed as soon as
+ * the owner's cookies or consent change. Expired entries are kept until they are replaced or evicted, so they can
+ * still be served while YouTube is unavailable.
+ */
+public class RecommendationCache implements IdentityChangeListener {
+
+    private final int maxSize;
+    private final EnumMap<PageType, Long> ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private static class Entry {
+        private final String ownerId;
+        private final ArrayList<Recommendation> recommendations;
+        private final long expires;
+        // Whether the entry was prefetched and has not been requested yet
+        private boolean prefetched;
+
+        private Entry(String ownerId, ArrayList<Recommendation> recommendations, long expires, boolean prefetched) {
+            this.ownerId = ownerId;
+            this.recommendations = recommendations;
+            this.expires = expires;
+            this.prefetched = prefetched;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxSize Maximum number of cached pages
+     * @param ttlMillis Time to live of cached pages per page type, pages of types without (positive) TTL are not cached
+     */
+    public RecommendationCache(int maxSize, Map<PageType, Long> ttlMillis) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlMillis = new EnumMap<PageType, Long>(PageType.class);
+        this.ttlMillis.putAll(ttlMillis);
+        Metrics.registerGauge("recommendationCache.size", this::size);
+        Metrics.registerGauge("recommendationCache.hitRatio",
+                () -> Metrics.ratio("recommendationCache.hits", "recommendationCache.misses"));
+    }
+
+    /**
+     * Brings the given video ID or search query into a canonical form, so that equivalent requests share an entry
+     *
+     * @param pageType The requested page type
+     * @param argument The video ID or search query
+     * @return Canonical representation of the argument
+     */
+    public static String canonicalize(PageType pageType, String argument) {
+        if (argument == null || pageType == PageType.MAIN)
+            return "";
+        argument = argument.trim();
+        switch (pageType) {
+            case WATCH:
+                // Ignore additional parameters passed along with the video ID (e.g., a timestamp)
+                int end = argument.length();
+                for (int i = 0; i < argument.length(); ++i) {
+                    char c = argument.charAt(i);
+                    if (c == '&' || c == '#' || c == '?') {
+                        end = i;
+                        break;
+                    }
+                }
+                return argument.substring(0, end);
+            default:
+                // Search queries are not case sensitive
+                return argument.replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Builds the key identifying the given request, equivalent requests of the same owner share the same key
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @param pageType The requested page type
+     * @param argument The requested video ID or search query
+     * @return Key of the request
+     */
+    public static String getKey(String ownerId, PageType pageType, String argument) {
+        return ownerId + '\n' + pageType.name() + '\n' + canonicalize(pageType, argument);
+    }
+
+    private boolean isCached(PageType pageType) {
+        Long ttl = ttlMillis.get(pageType);
+        return ttl != null && ttl > 0;
+    }
+
+    /**
+     * Looks up the recommendations previously obtained for the given request
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @param pageType The requested page type
+     * @param argument The requested video ID or search query
+     * @return The cached recommendations or null if there is no valid entry
+     */
+    public ArrayList<Recommendation> get(String ownerId, PageType pageType, String argument) {
+        if (!isCached(pageType))
+            return null;
+        String key = getKey(ownerId, pageType, argument);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expires < System.currentTimeMillis()) {
+                Metrics.increment("recommendationCache.expirations");
+                entry = null;
+            }
+            if (entry == null) {
+                Metrics.increment("recommendationCache.misses");
+                return null;
+            }
+            Metrics.increment("recommendationCache.hits");
+            if (entry.prefetched) {
+                entry.prefetched = false;
+                Metrics.increment("prefetch.hits");
+            }
+            return new ArrayList<Recommendation>(entry.recommendations);
+        }
+    }
+
+    /**
+     * Looks up the recommendations previously obtained for the given request, even if they have expired
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @param pageType The requested page type
+     * @param argument The requested video ID or search query
+     * @return The cached recommendations or null if there is no entry
+     */
+    public ArrayList<Recommendation> getStale(String ownerId, PageType pageType, String argument) {
+        if (!isCached(pageType))
+            return null;
+        synchronized (this) {
+            Entry entry = entries.get(getKey(ownerId, pageType, argument));
+            return entry == null ? null : new ArrayList<Recommendation>(entry.recommendations);
+        }
+    }
+
+    /**
+     * Checks whether there is a valid entry for the given request, without counting it as cache hit or miss
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @param pageType The requested page type
+     * @param argument The requested video ID or search query
+     * @return Whether the recommendations for the given request are cached
+     */
+    public boolean contains(String ownerId, PageType pageType, String argument) {
+        if (!isCached(pageType))
+            return false;
+        synchronized (this) {
+            Entry entry = entries.get(getKey(ownerId, pageType, argument));
+            return entry != null && entry.expires >= System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Stores the recommendations obtained for the given request
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @param pageType The requested page type
+     * @param argument The requested video ID or search query
+     * @param recommendations The parsed recommendations, empty results are not cached
+     */
+    public void put(String ownerId, PageType pageType, String argument, ArrayList<Recommendation> recommendations) {
+        put(ownerId, pageType, argument, recommendations, false);
+    }
+
+    /**
+     * Stores the recommendations obtained for the given request
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     * @param pageType The requested page type
+     * @param argument The requested video ID or search query
+     * @param recommendations The parsed recommendations, empty results are not cached
+     * @param prefetched Whether the recommendations were obtained before being requested
+     */
+    public void put(String ownerId, PageType pageType, String argument, ArrayList<Recommendation> recommendations,
+                    boolean prefetched) {
+        if (!isCached(pageType) || recommendations == null || recommendations.isEmpty())
+            return;
+        Entry entry = new Entry(ownerId, new ArrayList<Recommendation>(recommendations),
+                System.currentTimeMillis() + ttlMillis.get(pageType), prefetched);
+        synchronized (this) {
+            entries.put(getKey(ownerId, pageType, argument), entry);
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxSize && it.hasNext()) {
+                it.next();
+                it.remove();
+                Metrics.increment("recommendationCache.evictions");
+            }
+        }
+    }
+
+    /**
+     * Removes all entries obtained using the given owner's cookies
+     *
+     * @param ownerId The las2peer ID of the cookie owner
+     */
+    public synchronized void purge(String ownerId) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().ownerId.equals(ownerId)) {
+                it.remove();
+                Metrics.increment("recommendationCache.purges");
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void identityChanged(String ownerId) {
+        purge(ownerId);
+    }
+
+    @Override
+    public void consentChanged(String ownerId) {
+        purge(ownerId);
+    }
+}
@@ -0,0 +1,123 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReplayServer
+ *
+ * Local stand-in for YouTube serving the responses of a FixtureStore, so the service can be load tested without
+ * network access. Each response is delayed by the given latency plus a random jitter, and the given share of requests
+ * fails with status 500 to exercise the service's error handling. Requests which were not recorded receive a 404.
+ */
+public class ReplayServer {
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+
+    private final FixtureStore store;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "replay-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService delays = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replay-server-delay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor, the server is not started yet
+     *
+     * @param store Recorded responses to serve
+     * @param port Port to listen on (on the loopback interface), 0 to choose a free one
+     * @param latencyMillis Time each response is delayed by
+     * @param jitterMillis Maximum random time added to the latency
+     * @param errorRate Share of requests (between 0 and 1) answered with status 500
+     * @throws IOException If the server could not be bound to the port
+     */
+    public ReplayServer(FixtureStore store, int port, long latencyMillis, long jitterMillis, double errorRate)
+            throws IOException {
+        this.store = store;
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.jitterMillis = Math.max(0, jitterMillis);
+        this.errorRate = Math.min(1, Math.max(0, errorRate));
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(handlers);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Replaying YouTube responses from " + store.getDirectory() + " at " + getBaseUrl());
+    }
+
+    public void stop() {
+        server.stop(0);
+        delays.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    /**
+     * @return URL of the server without trailing slash, used in place of https://www.youtube.com
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        String query = exchange.getRequestURI().getRawQuery();
+        String pathAndQuery = exchange.getRequestURI().getRawPath() + (query != null ? "?" + query : "");
+        FixtureStore.Fixture fixture = store.find(exchange.getRequestMethod(), pathAndQuery, body);
+
+        long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        // Schedule the response instead of sleeping, so slow responses do not tie up a thread each, and hand it back to
+        // the handlers, so large responses do not hold up the responses due after them on the single scheduler thread
+        delays.schedule(() -> handlers.execute(() -> respond(exchange, pathAndQuery, fixture)), delay,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void respond(HttpExchange exchange, String pathAndQuery, FixtureStore.Fixture fixture) {
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                Metrics.increment("replay.injectedErrors");
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            if (fixture == null) {
+                Metrics.increment("replay.missing");
+                log.warning("No recorded response for " + exchange.getRequestMethod() + " " + pathAndQuery);
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            Metrics.increment("replay.served");
+            exchange.getResponseHeaders().set("Content-Type", fixture.getContentType());
+            exchange.sendResponseHeaders(200, fixture.getBody().length);
+            out.write(fixture.getBody());
+        } catch (IOException e) {
+            // Client has given up on the response
+            log.printStackTrace(e);
+        } finally {
+            exchange.close();
+        }
+    }
+}
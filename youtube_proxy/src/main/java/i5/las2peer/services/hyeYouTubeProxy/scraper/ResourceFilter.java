@@ -0,0 +1,104 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.Route;
+
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+import i5.las2peer.services.hyeYouTubeProxy.parser.PageType;
+
+import java.util.*;
+
+/**
+ * ResourceFilter
+ *
+ * Aborts requests for resources the parser never looks at (e.g., images, fonts, the video player, ads, and
+ * telemetry) while a YouTube page is loaded. Requests are blocked if their resource type or URL matches the block
+ * lists, unless the type or URL is on the allowlist of the requested page type.
+ */
+public class ResourceFilter {
+
+    public static final String DEFAULT_BLOCKED_TYPES = "image,media,font,texttrack,manifest";
+    public static final String DEFAULT_BLOCKED_PATTERNS = "/s/player/,googlevideo.com/videoplayback,doubleclick.net," +
+            "googlesyndication.com,googleadservices.com,google-analytics.com,/pagead/,/api/stats/,/ptracking," +
+            "/log_event,/generate_204";
+
+    // Rough transfer sizes used to estimate the traffic saved by blocking a request of the given type
+    private static final Map<String, Long> ESTIMATED_SIZES = Map.of(
+            "image", 20000L,
+            "media", 500000L,
+            "font", 40000L,
+            "script", 150000L,
+            "stylesheet", 30000L);
+    private static final long DEFAULT_ESTIMATED_SIZE = 2000L;
+
+    private final HashSet<String> blockedTypes;
+    private final ArrayList<String> blockedPatterns;
+    private final EnumMap<PageType, ArrayList<String>> allowlists =
+            new EnumMap<PageType, ArrayList<String>>(PageType.class);
+
+    /**
+     * Constructor
+     *
+     * @param blockedTypes Playwright resource types to block (e.g., image, font)
+     * @param blockedPatterns Parts of URLs to block
+     * @param pageAllowlists Resource types or URL parts which are never blocked for the respective page type
+     */
+    public ResourceFilter(List<String> blockedTypes, List<String> blockedPatterns,
+                          Map<PageType, List<String>> pageAllowlists) {
+        this.blockedTypes = new HashSet<String>(blockedTypes);
+        this.blockedPatterns = new ArrayList<String>(blockedPatterns);
+        for (PageType pageType : PageType.values()) {
+            List<String> allowlist = pageAllowlists.get(pageType);
+            allowlists.put(pageType, allowlist == null ? new ArrayList<String>() : new ArrayList<String>(allowlist));
+        }
+    }
+
+    /**
+     * Checks whether a request with the given properties should be aborted
+     *
+     * @param pageType The type of YouTube page being loaded
+     * @param resourceType The Playwright resource type of the request
+     * @param url The requested URL
+     * @return Whether the request is not needed to parse the given page
+     */
+    public boolean isBlocked(PageType pageType, String resourceType, String url) {
+        for (String allowed : allowlists.get(pageType)) {
+            if (allowed.equals(resourceType) || url.contains(allowed))
+                return false;
+        }
+        if (blockedTypes.contains(resourceType))
+            return true;
+        for (String pattern : blockedPatterns) {
+            if (url.contains(pattern))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Installs the filter on the given page, has to be called before navigating
+     *
+     * @param page The page which is about to load the given type of YouTube page
+     * @param pageType The type of YouTube page that will be loaded
+     */
+    public void apply(Page page, PageType pageType) {
+        page.route("**/*", route -> handle(route, pageType));
+    }
+
+    private void handle(Route route, PageType pageType) {
+        Request request = route.request();
+        String resourceType = request.resourceType();
+        // Never interfere with loading the page itself
+        if (!request.isNavigationRequest() && isBlocked(pageType, resourceType, request.url())) {
+            Metrics.increment("resourceFilter.blocked");
+            Metrics.increment("resourceFilter.blocked." + resourceType);
+            Metrics.add("resourceFilter.estimatedBytesSaved",
+                    ESTIMATED_SIZES.getOrDefault(resourceType, DEFAULT_ESTIMATED_SIZE));
+            route.abort("blockedbyclient");
+        } else {
+            Metrics.increment("resourceFilter.allowed");
+            route.resume();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.IdentityChangeListener;
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.OwnerIdentity;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.services.hyeYouTubeProxy.YouTubeProxy;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ScrapeEngine
+ *
+ * Distributes browser tasks over a fixed number of browser workers via a bounded job queue. Each worker owns its
+ * own browser, thus requests are no longer serialized by a single browser driver. Speculative jobs (prefetches) are
+ * only taken once no other job is waiting, other jobs are taken in the order they were submitted.
+ * Browsers are recycled after opening a given number of contexts, if the browsers' memory usage exceeds a given
+ * threshold, or if a browser disconnects. The replacement worker is launched before the old worker stops taking jobs,
+ * and the old worker finishes its current job before closing its browser.
+ */
+public class ScrapeEngine implements IdentityChangeListener {
+
+    private static final L2pLogger log = L2pLogger.getInstance(YouTubeProxy.class.getName());
+    private static final long MEMORY_CHECK_INTERVAL_MILLIS = 30000;
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private final PriorityBlockingQueue<Job<?>> queue;
+    private final int queueSize;
+    private final CopyOnWriteArrayList<BrowserWorker> workers = new CopyOnWriteArrayList<BrowserWorker>();
+    private final int contextPoolSize;
+    private final long contextIdleTimeoutMillis;
+    private final int maxContextsPerBrowser;
+    private final long maxRssKbPerBrowser;
+    private final AtomicInteger generation = new AtomicInteger(0);
+    private final AtomicLong lastMemoryCheck = new AtomicLong(System.currentTimeMillis());
+    private volatile long rssKb = 0;
+    private volatile boolean stopped = false;
+
+    /**
+     * A browser task waiting for execution
+     *
+     * @param <T> Type of the task's result
+     */
+    public static class Job<T> {
+        private final OwnerIdentity identity;
+        private final BrowserTask<T> task;
+        private final boolean prefetch;
+        private final CompletableFuture<T> future = new CompletableFuture<T>();
+        private final long submitted = System.nanoTime();
+        private final long number = sequence.getAndIncrement();
+
+        private Job(OwnerIdentity identity, BrowserTask<T> task, boolean prefetch) {
+            this.identity = identity;
+            this.task = task;
+            this.prefetch = prefetch;
+        }
+
+        // Prefetches after all other jobs, jobs of the same priority in the order they were submitted
+        private int compareTo(Job<?> other) {
+            if (prefetch != other.prefetch)
+                return Boolean.compare(prefetch, other.prefetch);
+            return Long.compare(number, other.number);
+        }
+
+        public OwnerIdentity getIdentity() {
+            return identity;
+        }
+
+        public BrowserTask<T> getTask() {
+            return task;
+        }
+
+        public CompletableFuture<T> getFuture() {
+            return future;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public boolean isPrefetch() {
+            return prefetch;
+        }
+    }
+
+    /**
+     * Constructor, launches the given number of browser workers
+     *
+     * @param workerCount Number of browsers running in parallel
+     * @param queueSize Maximum number of jobs waiting for a free worker
+     * @param contextPoolSize Maximum number of browser contexts kept open by each worker
+     * @param contextIdleTimeoutMillis Time after which an unused browser context is closed
+     * @param maxContextsPerBrowser Number of contexts after which a browser is recycled, 0 disables recycling
+     * @param maxRssMbPerBrowser Average resident memory per browser (in MB) above which the oldest browser is
+     * recycled, 0 disables recycling
+     */
+    public ScrapeEngine(int workerCount, int queueSize, int contextPoolSize, long contextIdleTimeoutMillis,
+                        int maxContextsPerBrowser, int maxRssMbPerBrowser) {
+        this.queueSize = Math.max(1, queueSize);
+        this.queue = new PriorityBlockingQueue<Job<?>>(this.queueSize, Job::compareTo);
+        this.contextPoolSize = contextPoolSize;
+        this.contextIdleTimeoutMillis = contextIdleTimeoutMillis;
+        this.maxContextsPerBrowser = maxContextsPerBrowser;
+        this.maxRssKbPerBrowser = maxRssMbPerBrowser * 1024L;
+        for (int i = 0; i < Math.max(1, workerCount); ++i) {
+            BrowserWorker worker = newWorker();
+            workers.add(worker);
+            worker.start();
+        }
+
+        Metrics.registerGauge("scrapeEngine.workers", workers::size);
+        Metrics.registerGauge("scrapeEngine.queueDepth", this::getQueueDepth);
+        Metrics.registerGauge("contextPool.size", () -> {
+            int size = 0;
+            for (BrowserWorker worker : workers)
+                size += worker.getContextPool().size();
+            return size;
+        });
+        Metrics.registerGauge("contextPool.hitRatio", () -> Metrics.ratio("contextPool.hits", "contextPool.misses"));
+        Metrics.registerGauge("browser.generation", generation::get);
+        Metrics.registerGauge("browser.rssMb", () -> rssKb / 1024);
+    }
+
+    private BrowserWorker newWorker() {
+        return new BrowserWorker(this, generation.getAndIncrement(), queue, contextPoolSize,
+                contextIdleTimeoutMillis);
+    }
+
+    /**
+     * Sums up the resident memory of all browser processes started by this JVM (only available on Linux)
+     *
+     * @return Resident memory in KB, or 0 if it cannot be determined
+     */
+    private static long getBrowserRssKb() {
+        long total = 0;
+        List<ProcessHandle> processes = ProcessHandle.current().descendants().toList();
+        for (ProcessHandle process : processes) {
+            String command = process.info().command().orElse("");
+            if (!command.contains("chrom") && !command.contains("headless_shell"))
+                continue;
+            try {
+                for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(process.pid()), "status"))) {
+                    if (line.startsWith("VmRSS:")) {
+                        total += Long.parseLong(line.replaceAll("[^0-9]", ""));
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                // Process already exited or /proc is not available
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Called by each worker between jobs to check whether its browser, or the oldest browser if the browsers use too
+     * much memory, should be recycled
+     *
+     * @param worker The calling worker
+     */
+    void checkRecycling(BrowserWorker worker) {
+        if (maxContextsPerBrowser > 0 && worker.getContextPool().getCreatedCount() >= maxContextsPerBrowser)
+            recycle(worker, "contextCount");
+
+        long now = System.currentTimeMillis();
+        long lastCheck = lastMemoryCheck.get();
+        if (maxRssKbPerBrowser <= 0 || now - lastCheck < MEMORY_CHECK_INTERVAL_MILLIS ||
+                !lastMemoryCheck.compareAndSet(lastCheck, now))
+            return;
+        rssKb = getBrowserRssKb();
+        if (rssKb <= maxRssKbPerBrowser * workers.size())
+            return;
+        BrowserWorker oldest = null;
+        for (BrowserWorker candidate : workers) {
+            if (!candidate.isRecycling() && (oldest == null || candidate.getGeneration() < oldest.getGeneration()))
+                oldest = candidate;
+        }
+        if (oldest != null)
+            recycle(oldest, "memory");
+    }
+
+    /**
+     * Launches a replacement for the given worker in the background and retires the worker once the replacement
+     * takes jobs. This may be called from any thread.
+     *
+     * @param worker The worker whose browser should be recycled
+     * @param reason Reason of the restart, used as metric name
+     */
+    void recycle(BrowserWorker worker, String reason) {
+        if (stopped || !worker.startRecycling())
+            return;
+        log.info("Recycling browser " + worker.getGeneration() + " (" + reason + ")");
+        Thread launcher = new Thread(() -> {
+            BrowserWorker replacement;
+            try {
+                replacement = newWorker();
+            } catch (Exception e) {
+                log.printStackTrace(e);
+                Metrics.increment("browser.launchFailures");
+                if (worker.isAlive())
+                    worker.abortRecycling();
+                else
+                    workers.remove(worker);
+                return;
+            }
+            workers.add(replacement);
+            replacement.start();
+            workers.remove(worker);
+            worker.retire();
+            Metrics.increment("browser.restarts");
+            Metrics.increment("browser.restarts." + reason);
+        }, "hye-browser-launcher");
+        launcher.setDaemon(true);
+        launcher.start();
+    }
+
+    /**
+     * Queues the given task for execution by the next free browser worker
+     *
+     * @param identity The owner whose cookies and headers are used by the task
+     * @param task The work to execute inside a browser context
+     * @param <T> Type of the task's result
+     * @return Future completed by the worker, or completed exceptionally right away if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(OwnerIdentity identity, BrowserTask<T> task) {
+        return submit(identity, task, false);
+    }
+
+    /**
+     * Queues the given task for execution by the next free browser worker
+     *
+     * @param identity The owner whose cookies and headers are used by the task
+     * @param task The work to execute inside a browser context
+     * @param prefetch Whether the task is speculative, it is then only executed once no other task is waiting
+     * @param <T> Type of the task's result
+     * @return Future completed by the worker, or completed exceptionally right away if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(OwnerIdentity identity, BrowserTask<T> task, boolean prefetch) {
+        Job<T> job = new Job<T>(identity, task, prefetch);
+        if (!offer(job)) {
+            Metrics.increment("scrapeEngine.rejected");
+            job.getFuture().completeExceptionally(new ScrapeException(503, "Too many pending requests."));
+        }
+        return job.getFuture();
+    }
+
+    // Workers only ever remove jobs, so the queue cannot exceed its size between checking and adding
+    private synchronized boolean offer(Job<?> job) {
+        return queue.size() < queueSize && queue.offer(job);
+    }
+
+    /**
+     * @return Number of jobs currently waiting for a free browser worker
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public void identityChanged(String ownerId) {
+        for (BrowserWorker worker : workers)
+            worker.getContextPool().invalidate(ownerId);
+    }
+
+    /**
+     * Stops all browser workers
+     */
+    public void shutdown() {
+        stopped = true;
+        for (BrowserWorker worker : workers)
+            worker.shutdown();
+    }
+}
@@ -0,0 +1,58 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * ScrapeException
+ *
+ * Signals that a request to YouTube could not be completed, along with the HTTP status code the service should
+ * respond with.
+ */
+public class ScrapeException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public ScrapeException(int status, String msg) {
+        super(msg);
+        this.status = status;
+    }
+
+    public ScrapeException(int status, String msg, Throwable cause) {
+        super(msg, cause);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Unwraps exceptions thrown while waiting for a future
+     *
+     * @param e Exception thrown by a scrape job or while waiting for its result
+     * @return The ScrapeException causing the failure, or a generic server error
+     */
+    public static ScrapeException from(Throwable e) {
+        while ((e instanceof ExecutionException || e instanceof CompletionException) && e.getCause() != null)
+            e = e.getCause();
+        if (e instanceof ScrapeException)
+            return (ScrapeException) e;
+        // Work is cancelled once the request's deadline expires or nobody waits for its result anymore
+        if (e instanceof CancellationException)
+            return new ScrapeException(504, "Request cancelled.");
+        return new ScrapeException(500, "Unspecified server error.", e);
+    }
+
+    /**
+     * @param e Exception thrown by a scrape job or while waiting for its result
+     * @return Whether the work was cancelled instead of failing by itself
+     */
+    public static boolean isCancellation(Throwable e) {
+        while ((e instanceof ExecutionException || e instanceof CompletionException) && e.getCause() != null)
+            e = e.getCause();
+        return e instanceof CancellationException;
+    }
+}
@@ -0,0 +1,30 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import i5.las2peer.services.hyeYouTubeProxy.parser.Recommendation;
+
+import java.util.ArrayList;
+
+/**
+ * ScrapedPage
+ *
+ * Recommendations scraped from a YouTube page along with the owner whose cookies were actually used, which differs
+ * from the owner chosen for the request if the scrape was handed over to another owner.
+ */
+public class ScrapedPage {
+
+    private final String ownerId;
+    private final ArrayList<Recommendation> recommendations;
+
+    public ScrapedPage(String ownerId, ArrayList<Recommendation> recommendations) {
+        this.ownerId = ownerId;
+        this.recommendations = recommendations;
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public ArrayList<Recommendation> getRecommendations() {
+        return recommendations;
+    }
+}
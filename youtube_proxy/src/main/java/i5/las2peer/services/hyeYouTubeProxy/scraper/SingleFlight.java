@@ -0,0 +1,97 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * SingleFlight
+ *
+ * Coalesces concurrent identical requests: while work for a given key is in progress, further callers with the same
+ * key receive the result of the running work instead of starting it again. Each caller may cancel its own future
+ * without affecting the others, the work itself is only abandoned once every caller has cancelled its future.
+ */
+public class SingleFlight {
+
+    // Work in progress along with the number of callers still waiting for its result
+    private static class Flight<T> {
+        private final CompletableFuture<T> promise = new CompletableFuture<T>();
+        private final CompletableFuture<Void> abandoned = new CompletableFuture<Void>();
+        private int waiters = 1;
+
+        private synchronized boolean join() {
+            if (abandoned.isDone())
+                return false;
+            ++waiters;
+            return true;
+        }
+
+        private synchronized boolean leave() {
+            return --waiters == 0 && !promise.isDone() && abandoned.complete(null);
+        }
+    }
+
+    private final String name;
+    private final ConcurrentHashMap<String, Flight<?>> inFlight = new ConcurrentHashMap<String, Flight<?>>();
+
+    /**
+     * Constructor
+     *
+     * @param name Prefix of the metrics recorded for this instance
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+        Metrics.registerGauge(name + ".inFlight", inFlight::size);
+        Metrics.registerGauge(name + ".coalescingRate", () -> Metrics.ratio(name + ".joined", name + ".executed"));
+    }
+
+    /**
+     * Starts the given work unless work with the same key is already in progress
+     *
+     * @param key Identifies requests which yield the same result
+     * @param work Starts the actual work given a future completed once no caller waits for its result anymore, only
+     * called if no work with the same key is in progress
+     * @param <T> Type of the result
+     * @return Future of the running or newly started work, cancelling it tells that the caller is no longer waiting
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String key, Function<CompletableFuture<Void>, CompletableFuture<T>> work) {
+        Flight<T> created = new Flight<T>();
+        // Abandoned work is not joined anymore, but replaced by new work
+        Flight<T> flight = (Flight<T>) inFlight.compute(key,
+                (k, running) -> running != null && running.join() ? running : created);
+        if (flight != created) {
+            Metrics.increment(name + ".joined");
+            return await(key, flight);
+        }
+
+        Metrics.increment(name + ".executed");
+        try {
+            work.apply(flight.abandoned).whenComplete((result, error) -> {
+                inFlight.remove(key, flight);
+                if (error != null)
+                    flight.promise.completeExceptionally(error);
+                else
+                    flight.promise.complete(result);
+            });
+        } catch (Exception e) {
+            inFlight.remove(key, flight);
+            flight.promise.completeExceptionally(e);
+        }
+        return await(key, flight);
+    }
+
+    private <T> CompletableFuture<T> await(String key, Flight<T> flight) {
+        // Do not let one waiter cancel the work for everyone else
+        CompletableFuture<T> result = flight.promise.thenApply(value -> value);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled() && flight.leave()) {
+                inFlight.remove(key, flight);
+                Metrics.increment(name + ".abandoned");
+            }
+        });
+        return result;
+    }
+}
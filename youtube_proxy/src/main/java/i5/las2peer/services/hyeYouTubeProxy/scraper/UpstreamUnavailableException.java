@@ -0,0 +1,22 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+/**
+ * UpstreamUnavailableException
+ *
+ * Signals that a request was not sent to YouTube because YouTube is currently overloaded or failing, along with the
+ * time after which the client may try again.
+ */
+public class UpstreamUnavailableException extends ScrapeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public UpstreamUnavailableException(String msg, long retryAfterSeconds) {
+        super(503, msg);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,49 @@
+package i5.las2peer.services.hyeYouTubeProxy.lib;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests reading the video metadata displayed by YouTube.
+ */
+public class MetadataTokenizerTest {
+
+    @Test
+    public void testCounts() {
+        Assert.assertEquals(1234, MetadataTokenizer.parseCount("1,234 views"));
+        Assert.assertEquals(1234567, MetadataTokenizer.parseCount("1.234.567 Aufrufe"));
+        Assert.assertEquals(1200000, MetadataTokenizer.parseCount("1.2M views"));
+        Assert.assertEquals(10000, MetadataTokenizer.parseCount("10K views"));
+        Assert.assertEquals(1250, MetadataTokenizer.parseCount("1.25K"));
+        Assert.assertEquals(1, MetadataTokenizer.parseCount("1 view"));
+        Assert.assertEquals(0, MetadataTokenizer.parseCount("No views"));
+        Assert.assertEquals(-1, MetadataTokenizer.parseCount(""));
+    }
+
+    @Test
+    public void testDurations() {
+        Assert.assertEquals(754, MetadataTokenizer.parseDuration("12:34"));
+        Assert.assertEquals(3723, MetadataTokenizer.parseDuration(" 1:02:03 "));
+        Assert.assertEquals(-1, MetadataTokenizer.parseDuration("LIVE"));
+        Assert.assertEquals(-1, MetadataTokenizer.parseDuration(""));
+    }
+
+    @Test
+    public void testAges() {
+        Assert.assertEquals(2 * 86400, MetadataTokenizer.parseAge("2 days ago"));
+        Assert.assertEquals(3 * 604800, MetadataTokenizer.parseAge("Streamed 3 weeks ago"));
+        Assert.assertEquals(5 * 60, MetadataTokenizer.parseAge("5 minutes ago"));
+        Assert.assertEquals(2629746, MetadataTokenizer.parseAge("1 month ago"));
+        Assert.assertEquals(31556952, MetadataTokenizer.parseAge("1 yr ago"));
+        Assert.assertEquals(-1, MetadataTokenizer.parseAge("Premieres soon"));
+    }
+
+    @Test
+    public void testTokens() {
+        String metaBlock = "Channel  •  1.2M views 2 days ago";
+        Assert.assertEquals("1.2M views", MetadataTokenizer.tokens(metaBlock, '•', 0, 2));
+        Assert.assertEquals("2 days ago", MetadataTokenizer.tokens(metaBlock, '•', 2, 3));
+        Assert.assertNull(MetadataTokenizer.tokens(metaBlock, '•', 2, 4));
+        Assert.assertNull(MetadataTokenizer.tokens("Channel", '•', 0, 1));
+    }
+}
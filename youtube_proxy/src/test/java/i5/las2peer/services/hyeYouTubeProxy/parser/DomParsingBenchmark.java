@@ -0,0 +1,144 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+/**
+ * DomParsingBenchmark
+ *
+ * Compares the time and memory needed to extract the recommendations from the DOM of YouTube pages by searching the
+ * subtree of every video card once per kind of element (as done before) and by collecting all cards in a single walk
+ * of the document. The DOM is built once beforehand, so only the extraction is measured. Pass the directory of
+ * responses recorded using the recordFixtures property to benchmark real pages, otherwise a synthetic search results
+ * page is used.
+ *
+ * Usage: java ... DomParsingBenchmark [fixtureDirectory] [iterations]
+ */
+public class DomParsingBenchmark {
+
+    // A parsed page along with its type, recorded pages may be of any type
+    private static class Sample {
+        private final PageType pageType;
+        private final Element body;
+
+        private Sample(PageType pageType, String html) {
+            this.pageType = pageType;
+            this.body = Jsoup.parse(html).body();
+        }
+    }
+
+    // Extraction as done before, kept as baseline
+    private static ArrayList<Recommendation> scanningExtract(PageType pageType, Element body) {
+        ArrayList<Recommendation> recs = new ArrayList<Recommendation>();
+        Elements thumbnails = body.getElementsByTag("ytd-thumbnail");
+        Iterator<Element> it = thumbnails.iterator();
+        while (it.hasNext()) {
+            Element recommendation = it.next().parent();
+            Elements imgs = recommendation.getElementsByTag("img");
+            Elements links = recommendation.getElementsByTag("a");
+            Recommendation rec;
+            if (pageType == PageType.WATCH)
+                rec = RecommendationBuilder.build(imgs, links);
+            else if (pageType == PageType.RESULTS)
+                rec = RecommendationBuilder.build(imgs, links, recommendation.getElementsByTag("ytd-video-meta-block"));
+            else
+                rec = RecommendationBuilder.build(imgs, links,
+                        recommendation.getElementsByClass("ytd-video-meta-block"));
+            if (rec != null)
+                recs.add(rec);
+        }
+        return recs;
+    }
+
+    // Synthetic search results page: cards nested in the usual layers of YouTube's custom elements
+    private static String syntheticPage(int videos) {
+        StringBuilder html = new StringBuilder("<html><head><title>Results</title></head><body><ytd-app>");
+        for (int i = 0; i < 200; ++i)
+            html.append("<div class=\"style-scope ytd-masthead\"><span>").append(i).append("</span></div>");
+        html.append("<ytd-section-list-renderer><div id=\"contents\">");
+        for (int i = 0; i < videos; ++i) {
+            html.append("<ytd-video-renderer><div id=\"dismissible\"><ytd-thumbnail><a href=\"/watch?v=video")
+                    .append(i).append("\"><yt-img-shadow><img src=\"https://i.ytimg.com/vi/video").append(i)
+                    .append("/hqdefault.jpg\"></yt-img-shadow><div id=\"overlays\"><span>12:34</span></div>")
+                    .append("</a></ytd-thumbnail><div class=\"text-wrapper\"><div id=\"meta\"><h3><a title=\"Video ")
+                    .append(i).append("\" href=\"/watch?v=video").append(i).append("\">Video ").append(i)
+                    .append("</a></h3><ytd-video-meta-block><div id=\"metadata\"><span>Channel</span> • ")
+                    .append("<span>1,234 views</span> <span>2 days ago</span></div></ytd-video-meta-block></div>")
+                    .append("<div id=\"channel-info\"><a href=\"/c/channel\">Channel</a><a href=\"/c/channel\">")
+                    .append("<img src=\"https://yt3.ggpht.com/a\"></a><a href=\"/c/channel\">Channel</a></div>")
+                    .append("<div id=\"description\"><a href=\"#\">Description ").append(i).append("</a></div>");
+            for (int j = 0; j < 10; ++j)
+                html.append("<div class=\"badge\"><span>Badge ").append(j).append("</span></div>");
+            html.append("</div></div></ytd-video-renderer>");
+        }
+        return html.append("</div></ytd-section-list-renderer></ytd-app></body></html>").toString();
+    }
+
+    private static List<Sample> loadPages(String directory) throws IOException {
+        List<Sample> pages = new ArrayList<Sample>();
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".html"))::iterator) {
+                String html = Files.readString(file, StandardCharsets.UTF_8);
+                for (PageType pageType : PageType.values()) {
+                    if (html.contains(YouTubeParser.getRendererKey(pageType))) {
+                        pages.add(new Sample(pageType, html));
+                        break;
+                    }
+                }
+            }
+        }
+        return pages;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void run(String name, List<Sample> pages, int iterations,
+            Function<Sample, ArrayList<Recommendation>> extract) {
+        // Warm up the JIT
+        for (int i = 0; i < Math.max(10, iterations); ++i)
+            for (Sample page : pages)
+                extract.apply(page);
+
+        long found = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i)
+            for (Sample page : pages)
+                found += extract.apply(page).size();
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        int operations = iterations * pages.size();
+        System.out.printf("%-12s %10.3f ms/page %12d bytes/page (%d recommendations/page)%n", name,
+                nanos / 1e6 / operations, bytes / operations, found / operations);
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Sample> pages = args.length > 0 ? loadPages(args[0]) :
+                List.of(new Sample(PageType.RESULTS, syntheticPage(40)));
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        if (pages.isEmpty()) {
+            System.out.println("No recorded pages found");
+            return;
+        }
+        System.out.println(pages.size() + " page(s)");
+
+        run("scanning", pages, iterations, page -> scanningExtract(page.pageType, page.body));
+        run("single pass", pages, iterations, page -> YouTubeParser.parseDom(page.pageType, page.body));
+    }
+}
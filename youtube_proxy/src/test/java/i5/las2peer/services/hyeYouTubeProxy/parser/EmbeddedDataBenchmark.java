@@ -0,0 +1,172 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * EmbeddedDataBenchmark
+ *
+ * Compares the time and memory needed to extract the ytInitialData renderer object from YouTube pages by copying the
+ * rest of the page into a buffer (as done before) and by parsing it in place, as well as the time and memory needed to
+ * read the recommendations from the renderer's Json tree and by streaming only the needed values. Pass the directory
+ * of responses recorded using the recordFixtures property to benchmark real pages, otherwise a synthetic main page of
+ * similar size is used.
+ *
+ * Usage: java ... EmbeddedDataBenchmark [fixtureDirectory] [iterations]
+ */
+public class EmbeddedDataBenchmark {
+
+    private static final String RENDERER_KEY = YouTubeParser.getRendererKey(PageType.MAIN);
+
+    // A page along with its type, recorded pages may be of any type
+    private static class Sample {
+        private final PageType pageType;
+        private final String html;
+
+        private Sample(PageType pageType, String html) {
+            this.pageType = pageType;
+            this.html = html;
+        }
+    }
+
+    // Extraction as done before, kept as baseline
+    private static JsonObject copyingExtract(String html, String mainObjKey) {
+        int htmlLength = html.length();
+        int pos = html.indexOf(mainObjKey);
+        if (pos < 0)
+            return null;
+        pos += mainObjKey.length();
+        while (html.charAt(pos) != '{')
+            ++pos;
+        char[] buffer = new char[htmlLength - pos];
+        buffer[0] = '{';
+        int bracketCount = 1;
+        int bufferLength = 1;
+        ++pos;
+        while (bracketCount > 0 && pos < htmlLength) {
+            char c = html.charAt(pos);
+            buffer[bufferLength] = c;
+            ++pos;
+            ++bufferLength;
+            if (c == '{')
+                ++bracketCount;
+            else if (c == '}')
+                --bracketCount;
+        }
+        return JsonParser.parseString(new String(buffer).substring(0, bufferLength)).getAsJsonObject();
+    }
+
+    // Synthetic main page: scripts before and after ytInitialData make up most of a real page's size
+    private static String syntheticPage(int videos) {
+        StringBuilder html = new StringBuilder("<html><head><script>var ytcfg = {\"INNERTUBE_API_KEY\":\"KEY\"};");
+        for (int i = 0; i < 20000; ++i)
+            html.append("function f").append(i).append("(a){return a+").append(i).append(";}");
+        html.append("</script></head><body><script>var ytInitialData = {\"contents\":{\"").append(RENDERER_KEY)
+                .append("\":{\"tabs\":[{\"tabRenderer\":{\"content\":{\"richGridRenderer\":{\"contents\":[");
+        for (int i = 0; i < videos; ++i) {
+            if (i > 0)
+                html.append(',');
+            html.append("{\"richItemRenderer\":{\"content\":{\"videoRenderer\":{\"videoId\":\"video").append(i)
+                    .append("\",\"title\":{\"runs\":[{\"text\":\"Video {").append(i).append("}\"}]},")
+                    .append("\"thumbnail\":{\"thumbnails\":[{\"url\":\"https://i.ytimg.com/vi/video").append(i)
+                    .append("/hqdefault.jpg\",\"width\":480,\"height\":270}]},")
+                    .append("\"ownerText\":{\"runs\":[{\"text\":\"Channel\",\"navigationEndpoint\":")
+                    .append("{\"browseEndpoint\":{\"canonicalBaseUrl\":\"/c/channel\"}}}]},")
+                    .append("\"navigationEndpoint\":{\"commandMetadata\":{\"webCommandMetadata\":")
+                    .append("{\"url\":\"/watch?v=video").append(i).append("\"}}},")
+                    .append("\"channelThumbnailSupportedRenderers\":{\"channelThumbnailWithLinkRenderer\":")
+                    .append("{\"thumbnail\":{\"thumbnails\":[{\"url\":\"https://yt3.ggpht.com/a\"}]}}},")
+                    .append("\"lengthText\":{\"simpleText\":\"12:34\"},")
+                    .append("\"publishedTimeText\":{\"simpleText\":\"2 days ago\"},")
+                    .append("\"descriptionSnippet\":{\"runs\":[{\"text\":\"Description\"}]},")
+                    .append("\"badges\":[{\"metadataBadgeRenderer\":{\"style\":\"BADGE_STYLE_TYPE_SIMPLE\"}}],")
+                    .append("\"viewCountText\":{\"simpleText\":\"1,234 views\"}}}}}");
+        }
+        html.append("]}}}}]}}};</script>");
+        for (int i = 0; i < 20000; ++i)
+            html.append("<div class=\"style-scope ytd-app\">").append(i).append("</div>");
+        return html.append("</body></html>").toString();
+    }
+
+    private static List<Sample> loadPages(String directory) throws IOException {
+        List<Sample> pages = new ArrayList<Sample>();
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".html"))::iterator) {
+                String html = Files.readString(file, StandardCharsets.UTF_8);
+                for (PageType pageType : PageType.values()) {
+                    if (html.contains(YouTubeParser.getRendererKey(pageType))) {
+                        pages.add(new Sample(pageType, html));
+                        break;
+                    }
+                }
+            }
+        }
+        return pages;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void run(String name, List<Sample> pages, int iterations, Function<Sample, Object> extract) {
+        // Warm up the JIT
+        for (int i = 0; i < Math.max(10, iterations); ++i)
+            for (Sample page : pages)
+                extract.apply(page);
+
+        int found = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            for (Sample page : pages) {
+                if (extract.apply(page) != null)
+                    ++found;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        int operations = iterations * pages.size();
+        System.out.printf("%-12s %10.3f ms/page %12d bytes/page (%d/%d extracted)%n", name,
+                nanos / 1e6 / operations, bytes / operations, found, operations);
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Sample> pages = args.length > 0 ? loadPages(args[0]) :
+                List.of(new Sample(PageType.MAIN, syntheticPage(60)));
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        if (pages.isEmpty()) {
+            System.out.println("No recorded pages found");
+            return;
+        }
+        long chars = 0;
+        for (Sample page : pages)
+            chars += page.html.length();
+        System.out.println(pages.size() + " page(s), " + chars / pages.size() + " chars on average");
+
+        run("copying", pages, iterations, page -> {
+            try {
+                return copyingExtract(page.html, YouTubeParser.getRendererKey(page.pageType));
+            } catch (Exception e) {
+                return null;
+            }
+        });
+        run("in place", pages, iterations, page -> YouTubeParser.getRenderer(page.pageType, page.html));
+        run("tree", pages, iterations, page -> {
+            JsonObject renderer = YouTubeParser.getRenderer(page.pageType, page.html);
+            return renderer == null ? null : YouTubeParser.parseInitialData(page.pageType, renderer);
+        });
+        run("projected", pages, iterations, page -> YouTubeParser.parseEmbeddedData(page.pageType, page.html));
+    }
+}
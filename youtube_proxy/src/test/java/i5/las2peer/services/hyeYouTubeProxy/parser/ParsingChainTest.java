@@ -0,0 +1,60 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.util.EnumMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests trying the parsing strategies in the configured order and escalating only if a result is not acceptable.
+ */
+public class ParsingChainTest {
+
+    private static final String COMPACT_VIDEO = "{\"compactVideoRenderer\":{\"title\":{\"simpleText\":\"Compact\"}," +
+            "\"shortBylineText\":{\"runs\":[{\"text\":\"Channel\",\"navigationEndpoint\":{\"browseEndpoint\":" +
+            "{\"canonicalBaseUrl\":\"/c/channel\"}}}]},\"navigationEndpoint\":{\"commandMetadata\":" +
+            "{\"webCommandMetadata\":{\"url\":\"/watch?v=def\"}}},\"thumbnail\":{\"thumbnails\":" +
+            "[{\"url\":\"thumb\"}]},\"channelThumbnail\":{\"thumbnails\":[{\"url\":\"avatar\"}]}," +
+            "\"lengthText\":{\"simpleText\":\"4:56\"},\"viewCountText\":{\"simpleText\":\"7 views\"}," +
+            "\"publishedTimeText\":{\"simpleText\":\"2 weeks ago\"}}}";
+
+    private static String watchPage(int videos) {
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < videos; ++i)
+            items.append(i > 0 ? "," : "").append(COMPACT_VIDEO);
+        return "<html><body><script>var ytInitialData = {\"contents\":{\"twoColumnWatchNextResults\":" +
+                "{\"secondaryResults\":{\"secondaryResults\":{\"results\":[" + items + "]}}}}};</script></body></html>";
+    }
+
+    @Test
+    public void testOrder() {
+        EnumMap<PageType, String> orders = new EnumMap<PageType, String>(PageType.class);
+        orders.put(PageType.WATCH, "DOM, unknown, embedded, dom");
+        orders.put(PageType.RESULTS, "unknown");
+        ParsingChain chain = new ParsingChain(orders, 1);
+        Assert.assertEquals(List.of(ParsingStrategy.EMBEDDED), chain.getOrder(PageType.MAIN));
+        Assert.assertEquals(List.of(ParsingStrategy.DOM, ParsingStrategy.EMBEDDED), chain.getOrder(PageType.WATCH));
+        Assert.assertEquals(List.of(ParsingStrategy.EMBEDDED, ParsingStrategy.DOM),
+                chain.getOrder(PageType.RESULTS));
+    }
+
+    @Test
+    public void testSkipsDomIfEmbeddedDataSuffices() {
+        long domRuns = Metrics.getCount("parser.dom.accepted") + Metrics.getCount("parser.dom.rejected");
+        Assert.assertEquals(3, new ParsingChain().parse(PageType.WATCH, watchPage(3)).size());
+        Assert.assertEquals(domRuns, Metrics.getCount("parser.dom.accepted") +
+                Metrics.getCount("parser.dom.rejected"));
+    }
+
+    @Test
+    public void testEscalatesOnTooFewResults() {
+        EnumMap<PageType, String> orders = new EnumMap<PageType, String>(PageType.class);
+        long domRejected = Metrics.getCount("parser.dom.rejected");
+        // Neither strategy finds enough recommendations, so the largest result is returned
+        Assert.assertEquals(2, new ParsingChain(orders, 5).parse(PageType.WATCH, watchPage(2)).size());
+        Assert.assertEquals(domRejected + 1, Metrics.getCount("parser.dom.rejected"));
+    }
+}
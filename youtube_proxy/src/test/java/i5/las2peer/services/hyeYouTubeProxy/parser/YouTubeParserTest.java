@@ -0,0 +1,192 @@
+package i5.las2peer.services.hyeYouTubeProxy.parser;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import i5.las2peer.services.hyeYouTubeProxy.lib.Metrics;
+
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests extracting the ytInitialData renderer objects embedded in YouTube pages and reading the recommendations from
+ * them.
+ */
+public class YouTubeParserTest {
+
+    private static final String VIDEO = "{\"videoId\":\"abc\",\"title\":{\"runs\":[{\"text\":\"Title\"}]}," +
+            "\"ownerText\":{\"runs\":[{\"text\":\"Channel\",\"navigationEndpoint\":{\"browseEndpoint\":" +
+            "{\"canonicalBaseUrl\":\"/c/channel\"}}}]},\"navigationEndpoint\":{\"commandMetadata\":" +
+            "{\"webCommandMetadata\":{\"url\":\"/watch?v=abc\"}}},\"thumbnail\":{\"thumbnails\":" +
+            "[{\"url\":\"thumb1\"},{\"url\":\"thumb2\"}]},\"channelThumbnailSupportedRenderers\":" +
+            "{\"channelThumbnailWithLinkRenderer\":{\"thumbnail\":{\"thumbnails\":[{\"url\":\"avatar\"}]}}}," +
+            "\"lengthText\":{\"simpleText\":\"1:23\"},\"viewCountText\":{\"simpleText\":\"45 views\"}," +
+            "\"publishedTimeText\":{\"simpleText\":\"1 day ago\"},\"descriptionSnippet\":{\"runs\":" +
+            "[{\"text\":\"Rich description\"}]},\"detailedMetadataSnippets\":[{\"snippetText\":{\"runs\":" +
+            "[{\"text\":\"Snippet\"}]}}],\"badges\":[{\"metadataBadgeRenderer\":{\"label\":\"New\"}}]}";
+    private static final String COMPACT_VIDEO = "{\"title\":{\"simpleText\":\"Compact\"},\"shortBylineText\":" +
+            "{\"runs\":[{\"text\":\"Channel\",\"navigationEndpoint\":{\"browseEndpoint\":" +
+            "{\"canonicalBaseUrl\":\"/c/channel\"}}}]},\"navigationEndpoint\":{\"commandMetadata\":" +
+            "{\"webCommandMetadata\":{\"url\":\"/watch?v=def\"}}},\"thumbnail\":{\"thumbnails\":" +
+            "[{\"url\":\"thumb\"}]},\"channelThumbnail\":{\"thumbnails\":[{\"url\":\"avatar\"}]}," +
+            "\"lengthText\":{\"simpleText\":\"4:56\"},\"viewCountText\":{\"simpleText\":\"7 views\"}," +
+            "\"publishedTimeText\":{\"simpleText\":\"2 weeks ago\"}}";
+    private static final String CONTINUATION = "{\"continuationItemRenderer\":{\"continuationEndpoint\":" +
+            "{\"continuationCommand\":{\"token\":\"TOKEN\"}}}}";
+
+    private static String page(String renderer) {
+        return "<html><script>var ytcfg = {\"a\": {}};</script><script>var ytInitialData = {\"contents\":" +
+                "{\"twoColumnBrowseResultsRenderer\":" + renderer + "}};</script><div>{ not json }</div></html>";
+    }
+
+    @Test
+    public void testExtractsRenderer() {
+        JsonObject renderer = YouTubeParser.getRenderer(PageType.MAIN, page("{\"tabs\":[{\"id\":1},{\"id\":2}]}"));
+        Assert.assertNotNull(renderer);
+        Assert.assertEquals(2, renderer.getAsJsonArray("tabs").size());
+    }
+
+    @Test
+    public void testIgnoresBracesInStrings() {
+        // Unbalanced braces and escaped quotes in titles used to end the object early or swallow the rest of the page
+        JsonObject renderer = YouTubeParser.getRenderer(PageType.MAIN,
+                page("{\"title\":\"}} not the end {\",\"quote\":\"\\\"}\\\\\",\"next\":{\"id\":3}}"));
+        Assert.assertNotNull(renderer);
+        Assert.assertEquals("}} not the end {", renderer.get("title").getAsString());
+        Assert.assertEquals("\"}\\", renderer.get("quote").getAsString());
+        Assert.assertEquals(3, renderer.getAsJsonObject("next").get("id").getAsInt());
+    }
+
+    @Test
+    public void testMissingOrTruncatedRenderer() {
+        Assert.assertNull(YouTubeParser.getRenderer(PageType.WATCH, page("{}")));
+        Assert.assertNull(YouTubeParser.getRenderer(PageType.MAIN,
+                "<script>var ytInitialData = {\"twoColumnBrowseResultsRenderer\":{\"tabs\":[{\"id\":"));
+        Assert.assertNull(YouTubeParser.getRenderer(PageType.MAIN, "\"twoColumnBrowseResultsRenderer\""));
+    }
+
+    @Test
+    public void testUnexpectedLayout() {
+        long missing = Metrics.getCount("parser.missingContents.twoColumnSearchResultsRenderer");
+        // Lists where objects are expected and vice versa, as after a change of YouTube's layout
+        JsonObject results = JsonParser.parseString("{\"primaryContents\":{\"sectionListRenderer\":" +
+                "{\"contents\":{\"itemSectionRenderer\":[]}}}}").getAsJsonObject();
+        Assert.assertTrue(YouTubeParser.parseInitialData(PageType.RESULTS, results).isEmpty());
+        Assert.assertNull(YouTubeParser.getContinuationToken(PageType.RESULTS, results));
+        Assert.assertEquals(missing + 1, Metrics.getCount("parser.missingContents.twoColumnSearchResultsRenderer"));
+
+        JsonObject response = JsonParser.parseString("{\"contents\":[],\"onResponseReceivedActions\":[1,{" +
+                "\"appendContinuationItemsAction\":{\"continuationItems\":{}}},{\"reloadContinuationItemsCommand\":" +
+                "{\"continuationItems\":[[],{\"continuationItemRenderer\":{\"continuationEndpoint\":[]}}]}}]}")
+                .getAsJsonObject();
+        Assert.assertTrue(YouTubeParser.parseApiResponse(PageType.MAIN, response).isEmpty());
+        Assert.assertNull(YouTubeParser.getApiContinuationToken(response));
+    }
+
+    // The recommendations read from the Json tree and by streaming the serialized renderer should be the same
+    private static void assertSameRecommendations(PageType pageType, String renderer, int expected) {
+        ArrayList<Recommendation> fromTree = YouTubeParser.parseInitialData(pageType,
+                JsonParser.parseString(renderer).getAsJsonObject());
+        ArrayList<Recommendation> projected = YouTubeParser.parseInitialData(pageType, renderer);
+        Assert.assertEquals(expected, projected.size());
+        Assert.assertEquals(fromTree.size(), projected.size());
+        Gson gson = new Gson();
+        for (int i = 0; i < projected.size(); ++i) {
+            // The upload date is derived from the current time, which may have moved on in between
+            Long treeEpoch = fromTree.get(i).getUploadedEpoch();
+            Long projectedEpoch = projected.get(i).getUploadedEpoch();
+            Assert.assertEquals(treeEpoch == null, projectedEpoch == null);
+            if (treeEpoch != null)
+                Assert.assertEquals(treeEpoch, projectedEpoch, 1);
+            JsonObject treeRec = gson.toJsonTree(fromTree.get(i)).getAsJsonObject();
+            JsonObject projectedRec = gson.toJsonTree(projected.get(i)).getAsJsonObject();
+            treeRec.remove("uploadedEpoch");
+            projectedRec.remove("uploadedEpoch");
+            Assert.assertEquals(treeRec, projectedRec);
+        }
+    }
+
+    @Test
+    public void testProjectionMatchesTree() {
+        assertSameRecommendations(PageType.MAIN, "{\"tabs\":[{\"tabRenderer\":{\"content\":{\"richGridRenderer\":" +
+                "{\"contents\":[{\"richItemRenderer\":{\"content\":{\"videoRenderer\":" + VIDEO + "}}}," +
+                CONTINUATION + "]}}}}]}", 1);
+        assertSameRecommendations(PageType.WATCH, "{\"secondaryResults\":{\"secondaryResults\":{\"results\":" +
+                "[{\"compactVideoRenderer\":" + COMPACT_VIDEO + "},{\"compactVideoRenderer\":" + COMPACT_VIDEO +
+                "}," + CONTINUATION + "]}}}", 2);
+        // Watch pages sometimes list chips first and wrap the videos in a section
+        assertSameRecommendations(PageType.WATCH, "{\"secondaryResults\":{\"secondaryResults\":{\"results\":" +
+                "[{\"relatedChipCloudRenderer\":{}},{\"itemSectionRenderer\":{\"contents\":" +
+                "[{\"compactVideoRenderer\":" + COMPACT_VIDEO + "}]}}]}}}", 1);
+        assertSameRecommendations(PageType.RESULTS, "{\"primaryContents\":{\"sectionListRenderer\":{\"contents\":" +
+                "[{\"itemSectionRenderer\":{\"contents\":[{\"videoRenderer\":" + VIDEO + "}," +
+                "{\"videoRenderer\":" + VIDEO + "}]}}," + CONTINUATION + "]}}}", 2);
+    }
+
+    @Test
+    public void testProjectionSkipsIncompleteVideos() {
+        String incomplete = VIDEO.replace("\"title\":{\"runs\":[{\"text\":\"Title\"}]},", "");
+        assertSameRecommendations(PageType.RESULTS, "{\"primaryContents\":{\"sectionListRenderer\":{\"contents\":" +
+                "[{\"itemSectionRenderer\":{\"contents\":[{\"videoRenderer\":" + incomplete + "}," +
+                "{\"videoRenderer\":" + VIDEO + "}]}}]}}}", 1);
+    }
+
+    @Test
+    public void testOtherRenderers() {
+        String reel = "{\"reelItemRenderer\":{\"headline\":{\"simpleText\":\"Short\"},\"navigationEndpoint\":" +
+                "{\"commandMetadata\":{\"webCommandMetadata\":{\"url\":\"/shorts/ghi\"}}},\"thumbnail\":" +
+                "{\"thumbnails\":[{\"url\":\"reel\"}]},\"viewCountText\":{\"simpleText\":\"1.2M views\"}}}";
+        String playlist = "{\"playlistRenderer\":{\"title\":{\"simpleText\":\"Playlist\"},\"navigationEndpoint\":" +
+                "{\"commandMetadata\":{\"webCommandMetadata\":{\"url\":\"/watch?v=jkl&list=PL\"}}}," +
+                "\"thumbnails\":[{\"thumbnails\":[{\"url\":\"playlist\"}]}]}}";
+        String live = VIDEO.replace("\"lengthText\":{\"simpleText\":\"1:23\"},", "");
+        long skipped = Metrics.getCount("parser.skipped.adSlotRenderer");
+        String renderer = "{\"tabs\":[{\"tabRenderer\":{\"content\":{\"richGridRenderer\":{\"contents\":[" +
+                "{\"richItemRenderer\":{\"content\":" + reel + "}},{\"richItemRenderer\":{\"content\":" +
+                "{\"adSlotRenderer\":{\"slot\":[1,2]}}}},{\"richItemRenderer\":{\"content\":{\"videoRenderer\":" +
+                live + "}}}," + playlist + "," + CONTINUATION + "]}}}}]}";
+        assertSameRecommendations(PageType.MAIN, renderer, 3);
+        // Counted once by each of the two parsers
+        Assert.assertEquals(skipped + 2, Metrics.getCount("parser.skipped.adSlotRenderer"));
+
+        ArrayList<Recommendation> recs = YouTubeParser.parseInitialData(PageType.MAIN, renderer);
+        Assert.assertEquals("Short", recs.get(0).getTitle());
+        Assert.assertEquals("", recs.get(0).getChannelName());
+        Assert.assertEquals(Long.valueOf(1200000), recs.get(0).getViewCount());
+        Assert.assertEquals("", recs.get(1).getLength());
+        Assert.assertNull(recs.get(1).getDurationSeconds());
+        Assert.assertEquals("/watch?v=jkl&list=PL", recs.get(2).getLink());
+    }
+
+    private static String resultCard(int i) {
+        return "<div id=\"dismissible\"><ytd-thumbnail><a href=\"/watch?v=" + i + "\"><img src=\"thumb" + i + "\">" +
+                "</a></ytd-thumbnail><div><a title=\"Title " + i + "\" href=\"/watch?v=" + i + "\">Title</a>" +
+                "<a href=\"/c/channel\">Channel</a><img src=\"avatar\"><a href=\"/c/channel\">Channel</a>" +
+                "<a href=\"#\">More</a><a href=\"#\">Description " + i + "</a><ytd-video-meta-block>Channel • " +
+                "1,234 views 2 days ago</ytd-video-meta-block></div></div>";
+    }
+
+    @Test
+    public void testDomCards() {
+        // Elements of one card must not leak into the next one
+        ArrayList<Recommendation> recs = YouTubeParser.parseDom(PageType.RESULTS, "<html><body><div>" +
+                resultCard(1) + resultCard(2) + "</div><a href=\"/other\">Other</a>" + resultCard(3) +
+                "</body></html>");
+        Assert.assertEquals(3, recs.size());
+        for (int i = 0; i < 3; ++i) {
+            Assert.assertEquals("Title " + (i + 1), recs.get(i).getTitle());
+            Assert.assertEquals("/watch?v=" + (i + 1), recs.get(i).getLink());
+            Assert.assertEquals("thumb" + (i + 1), recs.get(i).getThumbnail());
+            Assert.assertEquals("Description " + (i + 1), recs.get(i).getDescription());
+            Assert.assertEquals(Long.valueOf(1234), recs.get(i).getViewCount());
+            Assert.assertEquals("2 days ago", recs.get(i).getUploaded());
+        }
+        // Cards missing a metadata block are skipped
+        Assert.assertEquals(1, YouTubeParser.parseDom(PageType.RESULTS, "<body>" +
+                resultCard(1).replaceAll("<ytd-video-meta-block>.*</ytd-video-meta-block>", "") + resultCard(2) +
+                "</body>").size());
+    }
+}
@@ -0,0 +1,121 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.options.WaitUntilState;
+import com.sun.net.httpserver.HttpServer;
+
+import i5.las2peer.services.hyeYouTubeProxy.lib.Deadline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests reading the recommendations from the first API response of a page replayed from fixtures, before the page has
+ * finished loading. Skipped if no browser can be launched.
+ */
+public class ApiResponseListenerTest {
+
+    private static final long SLOW_SCRIPT_MILLIS = 5000;
+    private static final String API_PATH = "/youtubei/v1/next";
+    private static final String API_RESPONSE = "{\"contents\":{\"twoColumnWatchNextResults\":{\"secondaryResults\":" +
+            "{\"secondaryResults\":{\"results\":[{\"compactVideoRenderer\":{\"videoId\":\"def\"}}]}}}}}";
+
+    private Path directory;
+    private ReplayServer server;
+    // Serves a parser-blocking script which delays DOMContentLoaded of the replayed page
+    private HttpServer slowServer;
+    private Playwright playwright;
+    private Browser browser;
+
+    @Before
+    public void startServers() throws IOException {
+        slowServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        slowServer.createContext("/slow.js", exchange -> {
+            try {
+                Thread.sleep(SLOW_SCRIPT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] script = "window.slowScriptLoaded = true;".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/javascript");
+            exchange.sendResponseHeaders(200, script.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(script);
+            }
+        });
+        slowServer.start();
+        String slowScript = "<script src=\"http://127.0.0.1:" + slowServer.getAddress().getPort() +
+                "/slow.js\"></script>";
+
+        directory = Files.createTempDirectory("fixtures");
+        FixtureStore store = new FixtureStore(directory.toString());
+        // The page requests the API right away, but only finishes parsing once the slow script has loaded
+        store.record("GET", "https://www.youtube.com/watch?v=abc", null, "<html><head><script>fetch('" + API_PATH +
+                "?key=KEY', {method: 'POST', body: '{\"continuation\":\"TOKEN1\"}'});</script>" + slowScript +
+                "</head><body>watch abc</body></html>");
+        store.record("POST", "https://www.youtube.com" + API_PATH + "?key=KEY", "{\"continuation\":\"TOKEN1\"}",
+                API_RESPONSE);
+        store.record("GET", "https://www.youtube.com/watch?v=ghi", null, "<html><body>watch ghi</body></html>");
+        server = new ReplayServer(store, 0, 0, 0, 0);
+        server.start();
+
+        try {
+            playwright = Playwright.create();
+            browser = playwright.chromium().launch();
+        } catch (Throwable e) {
+            // E.g., the browser or Playwright's driver is not installed
+            Assume.assumeNoException("No browser available", e);
+        }
+    }
+
+    @After
+    public void stopServers() throws IOException {
+        if (browser != null)
+            browser.close();
+        if (playwright != null)
+            playwright.close();
+        server.stop();
+        slowServer.stop(0);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private String load(String path, long[] elapsedMillis) {
+        Page page = browser.newPage();
+        ApiResponseListener listener = new ApiResponseListener(page, API_PATH, "compactVideoRenderer", false);
+        long start = System.nanoTime();
+        page.navigate(server.getBaseUrl() + path, new Page.NavigateOptions().setWaitUntil(WaitUntilState.COMMIT));
+        String body = listener.await(new Deadline(2 * SLOW_SCRIPT_MILLIS));
+        elapsedMillis[0] = (System.nanoTime() - start) / 1000000;
+        return body;
+    }
+
+    @Test
+    public void testCompletesOnFirstApiResponse() {
+        long[] elapsed = new long[1];
+        Assert.assertEquals(API_RESPONSE, load("/watch?v=abc", elapsed));
+        // The page could not have finished loading, since the slow script is still pending
+        Assert.assertTrue("Waited " + elapsed[0] + " ms", elapsed[0] < SLOW_SCRIPT_MILLIS);
+    }
+
+    @Test
+    public void testReturnsOnceLoadedWithoutApiResponse() {
+        long[] elapsed = new long[1];
+        Assert.assertNull(load("/watch?v=ghi", elapsed));
+        Assert.assertTrue("Waited " + elapsed[0] + " ms", elapsed[0] < SLOW_SCRIPT_MILLIS);
+    }
+}
@@ -0,0 +1,184 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.google.gson.JsonParser;
+import com.microsoft.playwright.options.Cookie;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.OwnerIdentity;
+import i5.las2peer.services.hyeYouTubeProxy.lib.Deadline;
+import i5.las2peer.services.hyeYouTubeProxy.parser.PageType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests paging through the main page feed against a local stand-in for YouTube serving recorded responses: the main
+ * page holds videos 1-3, the continuation TOKEN1 videos 4-5, and the continuation TOKEN2 the last videos 6-7.
+ */
+public class ContinuationClientTest {
+
+    private HttpServer server;
+    private ContinuationClient client;
+    private OwnerIdentity identity;
+    // Requests received by the stand-in server in the form "METHOD path?query cookie"
+    private final List<String> requests = new CopyOnWriteArrayList<String>();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI() + " " +
+                    exchange.getRequestHeaders().getFirst("Cookie"));
+            if (exchange.getRequestURI().getPath().equals("/youtubei/v1/browse")) {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                String token = JsonParser.parseString(body).getAsJsonObject().get("continuation").getAsString();
+                respond(exchange, "browse_" + token + ".json");
+            } else {
+                respond(exchange, "main.html");
+            }
+        });
+        server.start();
+
+        client = new ContinuationClient(new HttpScraper(), "http://127.0.0.1:" + server.getAddress().getPort());
+        ArrayList<Cookie> cookies = new ArrayList<Cookie>();
+        cookies.add(new Cookie("SID", "owner-session"));
+        identity = new OwnerIdentity("owner", cookies, new HashMap<String, String>(), false);
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void respond(HttpExchange exchange, String fixture) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/continuation/" + fixture)) {
+            if (in == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] payload = in.readAllBytes();
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        }
+    }
+
+    private String getPageUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    private CompletableFuture<ContinuationClient.Result> fetch(OwnerIdentity identity, PageType pageType, int limit,
+                                                               String cursor) throws ScrapeException {
+        return client.fetch(identity, getPageUrl(), limit, ContinuationClient.decodeCursor(pageType, cursor),
+                new Deadline(10000));
+    }
+
+    private CompletableFuture<ContinuationClient.Result> fetch(PageType pageType, int limit, String cursor)
+            throws ScrapeException {
+        return fetch(identity, pageType, limit, cursor);
+    }
+
+    private List<String> getVideoLinks(ContinuationClient.Result result) {
+        List<String> links = new ArrayList<String>();
+        result.getRecommendations().forEach(rec -> links.add(rec.getLink()));
+        return links;
+    }
+
+    @Test
+    public void testFirstScreenWithinLimit() throws Exception {
+        ContinuationClient.Result result = fetch(PageType.MAIN, 2, null).get();
+        Assert.assertEquals(List.of("/watch?v=video0001", "/watch?v=video0002"), getVideoLinks(result));
+        Assert.assertNotNull(result.getNextCursor());
+        // The first screen is read from the page itself
+        Assert.assertEquals(1, requests.size());
+        Assert.assertTrue(requests.get(0).startsWith("GET / "));
+    }
+
+    @Test
+    public void testCursorContinuesAcrossScreens() throws Exception {
+        String cursor = fetch(PageType.MAIN, 2, null).get().getNextCursor();
+        requests.clear();
+
+        ContinuationClient.Result result = fetch(PageType.MAIN, 2, cursor).get();
+        Assert.assertEquals(List.of("/watch?v=video0003", "/watch?v=video0004"), getVideoLinks(result));
+        Assert.assertNotNull(result.getNextCursor());
+        // The rest of the first screen is kept instead of loading the page again, the next one is requested from the
+        // API using the owner's cookies and the API key configured in the page
+        Assert.assertEquals(List.of("POST /youtubei/v1/browse?key=TESTKEY SID=owner-session"), requests);
+    }
+
+    @Test
+    public void testStoredScreenOnlyForOwner() throws Exception {
+        String cursor = fetch(PageType.MAIN, 2, null).get().getNextCursor();
+        OwnerIdentity other = new OwnerIdentity("other", new ArrayList<Cookie>(), new HashMap<String, String>(),
+                false);
+        try {
+            fetch(other, PageType.MAIN, 2, cursor).get();
+            Assert.fail("Stored screen should not be returned to another owner");
+        } catch (ExecutionException e) {
+            Assert.assertEquals(410, ScrapeException.from(e).getStatus());
+        }
+    }
+
+    @Test
+    public void testReadsUntilLastScreen() throws Exception {
+        ContinuationClient.Result result = fetch(PageType.MAIN, 100, null).get();
+        Assert.assertEquals(7, result.getRecommendations().size());
+        Assert.assertEquals("/watch?v=video0007", result.getRecommendations().get(6).getLink());
+        Assert.assertNull(result.getNextCursor());
+    }
+
+    @Test
+    public void testPagesThroughWholeFeed() throws Exception {
+        List<String> links = new ArrayList<String>();
+        String cursor = null;
+        int calls = 0;
+        do {
+            ContinuationClient.Result result = fetch(PageType.MAIN, 3, cursor).get();
+            links.addAll(getVideoLinks(result));
+            cursor = result.getNextCursor();
+            ++calls;
+        } while (cursor != null && calls < 10);
+        Assert.assertEquals(7, links.size());
+        Assert.assertEquals("/watch?v=video0001", links.get(0));
+        Assert.assertEquals("/watch?v=video0007", links.get(6));
+    }
+
+    private void assertRejected(PageType pageType, String cursor) {
+        try {
+            ContinuationClient.decodeCursor(pageType, cursor);
+            Assert.fail("Cursor should have been rejected");
+        } catch (ScrapeException e) {
+            Assert.assertEquals(400, e.getStatus());
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidCursor() throws Exception {
+        assertRejected(PageType.MAIN, "not a cursor");
+        String cursor = fetch(PageType.MAIN, 2, null).get().getNextCursor();
+        assertRejected(PageType.RESULTS, cursor);
+        // Without token or stored screen the cursor would make the page be loaded again
+        assertRejected(PageType.MAIN, Base64.getUrlEncoder().encodeToString(
+                "{\"p\":\"MAIN\",\"s\":2}".getBytes(StandardCharsets.UTF_8)));
+        // Nothing was sent to YouTube for the rejected cursors
+        Assert.assertEquals(1, requests.size());
+    }
+}
@@ -0,0 +1,115 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import com.microsoft.playwright.options.Cookie;
+
+import i5.las2peer.services.hyeYouTubeProxy.identityManagement.OwnerIdentity;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests recording YouTube responses to a fixture directory and serving them again from the replay server.
+ */
+public class ReplayServerTest {
+
+    private static final String CONTINUATION_BODY =
+            "{\"context\":{\"client\":{\"clientName\":\"WEB\",\"clientVersion\":\"%s\"}},\"continuation\":\"TOKEN1\"}";
+
+    private Path directory;
+    private ReplayServer server;
+    private OwnerIdentity identity;
+
+    @Before
+    public void createFixtures() throws IOException {
+        directory = Files.createTempDirectory("fixtures");
+        FixtureStore store = new FixtureStore(directory.toString());
+        store.record("GET", "https://www.youtube.com/watch?v=abc", null, "<html>watch abc</html>");
+        store.record("POST", "https://www.youtube.com/youtubei/v1/browse?key=KEY",
+                String.format(CONTINUATION_BODY, "2.20211221"), "{\"continuation\": 1}");
+
+        ArrayList<Cookie> cookies = new ArrayList<Cookie>();
+        cookies.add(new Cookie("SID", "owner-session"));
+        identity = new OwnerIdentity("owner", cookies, new HashMap<String, String>(), false);
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        if (server != null)
+            server.stop();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private ReplayServer startServer(long latencyMillis, double errorRate) throws IOException {
+        server = new ReplayServer(new FixtureStore(directory.toString()), 0, latencyMillis, 0, errorRate);
+        server.start();
+        return server;
+    }
+
+    @Test
+    public void testReplaysRecordedPages() throws Exception {
+        startServer(0, 0);
+        HttpScraper scraper = new HttpScraper();
+        Assert.assertEquals("<html>watch abc</html>", scraper.fetch(identity, server.getBaseUrl() + "/watch?v=abc")
+                .get());
+
+        // Continuation requests are matched by their token, regardless of the client details sent along
+        String body = String.format(CONTINUATION_BODY, "2.20220101");
+        HttpRequest request = scraper.newRequest(identity, server.getBaseUrl() + "/youtubei/v1/browse?key=KEY")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        Assert.assertEquals("{\"continuation\": 1}", scraper.send(request, body).get());
+    }
+
+    @Test
+    public void testMissingPageFails() throws Exception {
+        startServer(0, 0);
+        try {
+            new HttpScraper().fetch(identity, server.getBaseUrl() + "/watch?v=unknown").get();
+            Assert.fail("Page was never recorded");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("404"));
+        }
+    }
+
+    @Test
+    public void testInjectsLatencyAndErrors() throws Exception {
+        startServer(200, 1);
+        long start = System.nanoTime();
+        try {
+            new HttpScraper().fetch(identity, server.getBaseUrl() + "/watch?v=abc").get();
+            Assert.fail("All requests should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("500"));
+        }
+        Assert.assertTrue((System.nanoTime() - start) / 1000000 >= 200);
+    }
+
+    @Test
+    public void testRecordsWhileScraping() throws Exception {
+        startServer(0, 0);
+        Path recorded = Files.createTempDirectory("recorded");
+        try {
+            HttpScraper scraper = new HttpScraper(new FixtureStore(recorded.toString()));
+            scraper.fetch(identity, server.getBaseUrl() + "/watch?v=abc").get();
+            FixtureStore.Fixture fixture = new FixtureStore(recorded.toString()).find("GET", "/watch?v=abc", "");
+            Assert.assertNotNull(fixture);
+            Assert.assertEquals("<html>watch abc</html>", new String(fixture.getBody(), "UTF-8"));
+        } finally {
+            try (Stream<Path> files = Files.walk(recorded)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+}
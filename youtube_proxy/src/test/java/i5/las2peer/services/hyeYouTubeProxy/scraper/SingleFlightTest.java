@@ -0,0 +1,60 @@
+package i5.las2peer.services.hyeYouTubeProxy.scraper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that concurrent callers share a single piece of work, which is only abandoned once every caller has given up
+ * on its result.
+ */
+public class SingleFlightTest {
+
+    private final SingleFlight flights = new SingleFlight("singleFlightTest");
+    private final AtomicInteger started = new AtomicInteger();
+    private final CompletableFuture<String> work = new CompletableFuture<String>();
+    private CompletableFuture<Void> abandoned;
+
+    private CompletableFuture<String> execute() {
+        return flights.execute("key", abandoned -> {
+            started.incrementAndGet();
+            this.abandoned = abandoned;
+            return work;
+        });
+    }
+
+    @Test
+    public void testSharesResult() {
+        CompletableFuture<String> first = execute();
+        CompletableFuture<String> second = execute();
+        work.complete("result");
+        Assert.assertEquals(1, started.get());
+        Assert.assertEquals("result", first.join());
+        Assert.assertEquals("result", second.join());
+    }
+
+    @Test
+    public void testContinuesWhileCallersWait() {
+        CompletableFuture<String> first = execute();
+        CompletableFuture<String> second = execute();
+        // The caller which started the work gives up, e.g., because its deadline expired
+        first.cancel(false);
+        Assert.assertFalse(abandoned.isDone());
+        work.complete("result");
+        Assert.assertEquals("result", second.join());
+    }
+
+    @Test
+    public void testAbandonsOnceAllCallersLeft() {
+        CompletableFuture<String> first = execute();
+        CompletableFuture<String> second = execute();
+        second.cancel(false);
+        first.cancel(false);
+        Assert.assertTrue(abandoned.isDone());
+        // Abandoned work is not joined anymore
+        execute();
+        Assert.assertEquals(2, started.get());
+    }
+}